@@ -0,0 +1,114 @@
+package CHUIMiner_MK2;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+//	BinaryDataset
+//	-------------
+//	Reader for the pre-parsed dataset format written by MLCMiner.BinaryDataset,
+//	the columns are loaded through memory-mapped buffers. See that class for the
+//	layout and the converter.
+public class BinaryDataset {
+
+	static final int MAGIC = 0x4D4C4342;	// "MLCB"
+	static final int VERSION = 1;
+	static final int HEADER = 4 * 4 + 8 + 4 + 4;
+
+	// true if the file starts with the binary dataset magic number
+	public static boolean isBinary(String path) throws IOException {
+		InputStream in = new FileInputStream(path);
+		try {
+			byte[] head = new byte[4];
+			if (in.read(head) < 4) return false;
+			return ByteBuffer.wrap(head).order(ByteOrder.LITTLE_ENDIAN).getInt() == MAGIC;
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	final int		transCount;
+	final int		maxItem;
+	final int		parentLength;
+	final long		occurrences;
+	final int		tupleCount;
+	final FileChannel channel;
+
+	private BinaryDataset(FileChannel channel) throws IOException {
+		this.channel = channel;
+		ByteBuffer header = map(0, HEADER);
+		if (header.getInt() != MAGIC) throw new IOException("Not a binary dataset");
+		int version = header.getInt();
+		if (version != VERSION) throw new IOException("Unsupported binary dataset version " + version);
+		transCount = header.getInt();
+		maxItem = header.getInt();
+		parentLength = header.getInt();
+		occurrences = header.getLong();
+		tupleCount = header.getInt();
+	}
+
+	private ByteBuffer map(long position, long size) throws IOException {
+		if (size > Integer.MAX_VALUE) throw new IOException("Binary dataset column too large to be mapped");
+		return channel.map(FileChannel.MapMode.READ_ONLY, position, size).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	private long offsetsPosition()		{ return HEADER; }
+	private long itemsPosition()		{ return offsetsPosition() + 8L * (transCount + 1); }
+	private long utilitiesPosition()	{ return itemsPosition() + 4L * occurrences; }
+	private long tuPosition()			{ return utilitiesPosition() + 8L * occurrences; }
+	private long tuplesPosition()		{ return tuPosition() + 8L * transCount; }
+
+	// load at most 'maxTrans' transactions of a binary dataset
+	static List<Transaction> readTransactions(String path, int maxTrans) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(path, "r");
+		try {
+			BinaryDataset bin = new BinaryDataset(file.getChannel());
+			int count = (maxTrans > 0) ? Math.min(bin.transCount, maxTrans) : bin.transCount;	// <= 0: no cap, as for the text file
+			long[] offsets = new long[count + 1];
+			bin.map(bin.offsetsPosition(), 8L * (count + 1)).asLongBuffer().get(offsets);
+
+			IntBuffer items = bin.map(bin.itemsPosition(), 4L * offsets[count]).asIntBuffer();
+			DoubleBuffer utilities = bin.map(bin.utilitiesPosition(), 8L * offsets[count]).asDoubleBuffer();
+			DoubleBuffer tu = bin.map(bin.tuPosition(), 8L * count).asDoubleBuffer();
+
+			List<Transaction> transactions = new ArrayList<Transaction>(count);
+			for (int t = 0; t < count; t++) {
+				int length = (int) (offsets[t+1] - offsets[t]);
+				int[] transItems = new int[length];
+				double[] transUtilities = new double[length];
+				items.get(transItems);
+				utilities.get(transUtilities);
+				transactions.add(new Transaction(transItems, transUtilities, tu.get()));
+			}
+			return transactions;
+		}
+		finally {
+			file.close();
+		}
+	}
+
+	// load the taxonomy tuples in their original file order, as { children, parents }
+	static int[][] readTuples(String path) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(path, "r");
+		try {
+			BinaryDataset bin = new BinaryDataset(file.getChannel());
+			IntBuffer tuples = bin.map(bin.tuplesPosition(), 8L * bin.tupleCount).asIntBuffer();
+			int[][] result = new int[2][bin.tupleCount];
+			tuples.get(result[0]);
+			tuples.get(result[1]);
+			return result;
+		}
+		finally {
+			file.close();
+		}
+	}
+}
@@ -1,8 +1,7 @@
 package CHUIMiner_MK2;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.management.ManagementFactory;
 import java.lang.management.MemoryPoolMXBean;
 import java.lang.management.MemoryType;
@@ -14,6 +13,11 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
 
 /**
 	CHUI-Miner**: Simply extends the CHUI-Miner algorithm to work on taxonomy datasets 
@@ -34,13 +38,17 @@ import java.util.Map;
 		public int		patternCount = 0; 				// multi-level HUIs found
 		public int		candidateCount = 0;				// candidate high-utility itemsets counter
 		public double	minUtil = 0.0;					// minimum utility
+		public int		parallelism = 1;				// worker threads, 1 = sequential mining
+		public int		forkDepth = 2;					// recursion depth up to which subtrees are forked as tasks
+		public int		loaderThreads = 0;				// > 0: load the dataset with the memory-mapped parallel parser
 		
 		Map<Integer, Integer> mapItemToLevel;			// Item -> level hashmap
 		Map<Integer, Double> mapItemToGWU;				// Map to remember the GWU/TWU of each item	
 		Map<Integer, List<Integer>> mapItemToAncestor;	// Real taxonomy hashmap
 
 		List<List<Itemset>> listItemsetsBySize = null;	// The set of multi-level closed high utility itemsets (MLCHUIs) ordered by their support
-		BufferedWriter writer = null;					// file writer  
+		PatternWriter writer = null;					// file writer  
+		Consumer<Itemset> sink = null;					// publish(): receives the patterns instead of the writer
 		Taxonomy taxonomy;								// for describing the taxonomy of a dataset
 		
 		class Pair {									// represents an item and its utility in a transaction
@@ -51,6 +59,32 @@ import java.util.Map;
 		public CHUIMinerMK2() {
 		}
 
+		public CHUIMinerMK2(int threads) {
+			parallelism = threads;
+		}
+		
+		// state owned by a single search task: counters and the patterns it found, buffered
+		// when running in parallel so that they can be written in sequential search order
+		class SearchContext {
+			int				patternCount = 0;
+			int				candidateCount = 0;
+			int				depth = 0;				// current recursion depth
+			List<Itemset>	patterns = null;		// null = write straight through
+			List<SearchTask> branches = null;		// forked top-level subtrees, joined by the caller
+			
+			SearchContext(int depth, boolean buffered) {
+				this.depth = depth;
+				if (buffered) patterns = new ArrayList<Itemset>();
+			}
+			
+			void merge(SearchContext child) {
+				patternCount += child.patternCount;
+				candidateCount += child.candidateCount;
+				if (patterns != null && child.patterns != null)
+					patterns.addAll(child.patterns);
+			}
+		}
+
 		// ----------------------
 		// CHUI-Miner** ALGORITHM
 		// ----------------------
@@ -63,24 +97,85 @@ import java.util.Map;
 		public void runAlgorithm(String inputTransaction, String inputTaxonomy, String output, Double minUtility, int maxTrans) throws IOException {
 			
 			// initializations
-			mapItemToGWU		= new HashMap<Integer, Double>();		
-			mapItemToLevel		= new HashMap<Integer, Integer>();
-			mapItemToAncestor	= new HashMap<Integer, List<Integer>>();		
-			taxonomy			= new Taxonomy(inputTaxonomy);
 			minUtil				= minUtility;
 
 			if (output != null)			// output to file ?
-				writer = new BufferedWriter(new FileWriter(output));
+				writer = new PatternWriter(output);
 			else {
 				writer = null;			// only return the pattern count
 				listItemsetsBySize = new ArrayList<List<Itemset>>();
 			}
 		
-			timerStart = System.currentTimeMillis();
+			Throwable failure = null;
+			try {
+				timerStart = System.currentTimeMillis();
+			
+				List<List<UtilityList>> ulLists = buildUtilityLists(inputTransaction, inputTaxonomy, maxTrans);
+				int maxLevel = ulLists.size();
+			
+				System.out.println("- MLCHUI mining...");
+			
+				if (parallelism > 1)
+					mineParallel(ulLists, maxLevel);
+				else {
+					SearchContext ctx = new SearchContext(0, false);
+					for(int i = 0; i < maxLevel;i++) {						// Mine the database recursively
+						chuiMiner(ctx, true, new int[0], null, new Preset(), ulLists.get(i));
+					} // for i
+					patternCount += ctx.patternCount;
+					candidateCount += ctx.candidateCount;
+				}
+			}
+			catch (Throwable e) {
+				failure = e;
+				throw e;
+			}
+			finally {
+				if (writer != null) {								// close the output file if present, also when the run failed
+					if (failure == null) writer.close();
+					else try {
+						writer.close();
+					}
+					catch (Throwable e) {
+						failure.addSuppressed(e);					// the failure of the run is the one reported
+					}
+				}
+			}
+
+			timerStop = System.currentTimeMillis();					// record end time
+			
+			System.out.println("- Done.");
+		}
+
+		// publish the patterns of a run to a Flow subscriber as they are found, instead of
+		// writing them. The run starts on subscription, see PatternPublisher.
+		// Backpressure holds up the search when it is sequential only: parallel workers buffer
+		// the patterns of each top-level branch, which are published once the branch is done.
+		public Flow.Publisher<Itemset> publish(String inputTransaction, String inputTaxonomy, double minUtility, int maxTrans) {
+			return new PatternPublisher<Itemset>(patterns -> {
+				sink = patterns;
+				try {
+					runAlgorithm(inputTransaction, inputTaxonomy, null, minUtility, maxTrans);
+				}
+				finally {
+					sink = null;
+				}
+			}, Flow.defaultBufferSize());
+		}
+		
+		// both dataset scans: TWUs and ancestors, then the utility lists of every level
+		List<List<UtilityList>> buildUtilityLists(String inputTransaction, String inputTaxonomy, int maxTrans) throws IOException {
+			
+			mapItemToGWU		= new HashMap<Integer, Double>();		
+			mapItemToLevel		= new HashMap<Integer, Integer>();
+			mapItemToAncestor	= new HashMap<Integer, List<Integer>>();		
+			taxonomy			= new Taxonomy(inputTaxonomy);
 			
 			// first dataset scan to calculate the TWU of each item.
+			TaxonomyIndex taxonomyIndex = taxonomy.index();		// parents, levels and ancestor paths of the items
 			System.out.println("- First dataset scan...");
-			Dataset	dataset = new Dataset(inputTransaction, maxTrans);	// should perform similar transaction merging here, too
+			Dataset	dataset = (loaderThreads > 0) ? new Dataset(inputTransaction, maxTrans, loaderThreads)
+											  : new Dataset(inputTransaction, maxTrans);	// should perform similar transaction merging here, too
 			
 			for (int tid = 0; tid < dataset.getTransactions().size(); tid++) {
 	    		Transaction transaction = dataset.getTransactions().get(tid);
@@ -98,19 +193,15 @@ import java.util.Map;
 					ancestor.add(item);				
 					mapItemToGWU.put(item, twu);								
 					if (mapItemToAncestor.get(item) == null) {						
-						Integer itemCopy = item;							
-						for (int m = 0; m < taxonomy.size(); m++) {
-							Integer childItem = taxonomy.child(m);								
-							Integer parentItem = taxonomy.parent(m);
-							if (childItem.intValue() == itemCopy.intValue()) {
-								ancestor.add(parentItem);
-								if (!ancestantExist.contains(parentItem)) {
-									ancestantExist.add(parentItem);
-									Double twuParent = mapItemToGWU.get(parentItem);
-									twuParent = (twuParent == null) ? transactionUtility: transactionUtility + twuParent;
-									mapItemToGWU.put(parentItem, twuParent);
-								} // if
-								itemCopy = parentItem;
+						int depth = taxonomyIndex.depth(item);
+						for (int m = 1; m < depth; m++) {						// ancestors from the flattened path
+							Integer parentItem = taxonomyIndex.ancestor(item, m);
+							ancestor.add(parentItem);
+							if (!ancestantExist.contains(parentItem)) {
+								ancestantExist.add(parentItem);
+								Double twuParent = mapItemToGWU.get(parentItem);
+								twuParent = (twuParent == null) ? transactionUtility: transactionUtility + twuParent;
+								mapItemToGWU.put(parentItem, twuParent);
 							} // if
 						} // for m
 							
@@ -258,45 +349,36 @@ import java.util.Map;
 					else {
 						boolean useTWU = false;
 						
-						Pair itemCopyPair = new Pair();
-						itemCopyPair.item = pair.item;
-						itemCopyPair.utility = pair.utility;
-							
-						for (int m = 0; m < taxonomy.size(); m++) {	
+						int depth = taxonomyIndex.depth(pair.item);
+						for (int m = 1; m < depth; m++) {					// walk up the ancestors of the item
 							Pair parentItemPair = new Pair();
-							Integer childItem = taxonomy.child(m);
-							parentItemPair.item = taxonomy.parent(m);
-								
-							if (childItem.equals(itemCopyPair.item)) {
-								if (mapItemToGWU.get(parentItemPair.item) >= this.minUtil) {
+							parentItemPair.item = taxonomyIndex.ancestor(pair.item, m);
+							
+							if (mapItemToGWU.get(parentItemPair.item) >= this.minUtil) {
 
-									useTWU = true;
-									int parentItemLevel = mapItemToLevel.get(parentItemPair.item);
-									if (checkItemExist.get(parentItemLevel-1).get(tid).contains(parentItemPair.item)) {
-										int index = checkItemExist.get(parentItemLevel-1).get(tid).indexOf(parentItemPair.item);
-										double utilityOfOldParent = revisedTransaction.get(parentItemLevel-1).get(tid).get(index).utility;
-											
-										Pair pairTemp = new Pair();
-										pairTemp.item = parentItemPair.item;
-										pairTemp.utility = utilityOfOldParent + pair.utility;
-										revisedTransaction.get(parentItemLevel-1).get(tid).set(index, pairTemp);
-										itemCopyPair = pairTemp;
+								useTWU = true;
+								int parentItemLevel = mapItemToLevel.get(parentItemPair.item);
+								if (checkItemExist.get(parentItemLevel-1).get(tid).contains(parentItemPair.item)) {
+									int index = checkItemExist.get(parentItemLevel-1).get(tid).indexOf(parentItemPair.item);
+									double utilityOfOldParent = revisedTransaction.get(parentItemLevel-1).get(tid).get(index).utility;
+										
+									Pair pairTemp = new Pair();
+									pairTemp.item = parentItemPair.item;
+									pairTemp.utility = utilityOfOldParent + pair.utility;
+									revisedTransaction.get(parentItemLevel-1).get(tid).set(index, pairTemp);
 											
-										remainingUtility[parentItemLevel-1] += pair.utility;
-										newTWU[parentItemLevel-1] += pair.utility;
-									} // if
-									else {
-										checkItemExist.get(parentItemLevel-1).get(tid).add(parentItemPair.item);
-										parentItemPair.utility = pair.utility;
-										revisedTransaction.get(parentItemLevel-1).get(tid).add(parentItemPair);
-										itemCopyPair = parentItemPair;
+									remainingUtility[parentItemLevel-1] += pair.utility;
+									newTWU[parentItemLevel-1] += pair.utility;
+								} // if
+								else {
+									checkItemExist.get(parentItemLevel-1).get(tid).add(parentItemPair.item);
+									parentItemPair.utility = pair.utility;
+									revisedTransaction.get(parentItemLevel-1).get(tid).add(parentItemPair);
 											
-										remainingUtility[parentItemLevel-1] += parentItemPair.utility;
-										newTWU[parentItemLevel-1] += parentItemPair.utility;
-									} // else
-								} // if 
-								else	itemCopyPair = parentItemPair;
-							} // if
+									remainingUtility[parentItemLevel-1] += parentItemPair.utility;
+									newTWU[parentItemLevel-1] += parentItemPair.utility;
+								} // else
+							} // if 
 						} // for
 						
 						if (useTWU) {
@@ -349,18 +431,7 @@ import java.util.Map;
 						return compareItems(o1.item, o2.item);		// compare the TWU of the items
 					}});
 			} // for i
-		
-			System.out.println("- MLCHUI mining...");
-			
-			for(int i = 0; i < maxLevel;i++) {						// Mine the database recursively
-				chuiMiner(true, new int[0], null, new ArrayList<UtilityList>(), ulLists.get(i));
-			} // for i
-		
-			if (writer != null)  writer.close();					// close the output file if present
-
-			timerStop = System.currentTimeMillis();					// record end time
-			
-			System.out.println("- Done.");
+			return ulLists;
 		}
 		
 		private int compareItems(int item1, int item2) {			// compare items by their TWU
@@ -381,7 +452,7 @@ import java.util.Map;
 	    }
 		
 		// Do a binary search to find the element with a given tid in a utility list
-		private Element findElementWithTID(UtilityList ulist, int tid) {
+		Element findElementWithTID(UtilityList ulist, int tid) {
 			List<Element> list = ulist.elements;
 			
 			// perform a binary search to check if  the subset appears in  level k-1.
@@ -410,8 +481,11 @@ import java.util.Map;
 		// =================================== CHUI-MINER ===================================
 		// ==================================================================================
 
-		private void chuiMiner(boolean firstTime, int [] closedSet, UtilityList closedSetUL, 
-				List<UtilityList> preset, List<UtilityList> postset) throws IOException {
+		private void chuiMiner(SearchContext ctx, boolean firstTime, int [] closedSet, UtilityList closedSetUL, 
+				Preset preset, List<UtilityList> postset) throws IOException {
+			
+			List<SearchTask> forks = (parallelism > 1 && ctx.depth < forkDepth) ? new ArrayList<SearchTask>() : null;
+			int presetSize = preset.size();		// the preset of this frame, its subtrees push above it
 			
 			//L2: for all i in postset
 			for (UtilityList iUL : postset) {
@@ -426,59 +500,167 @@ import java.util.Map;
 
 				// if newgen has high utility supersets
 				if(isPassingHUIPruning(newgen_TIDs)){
-					// L3: newgen = closedset U {i}
-					// Create the itemset for newgen
-					int[] newGen = appendItem(closedSet, iUL.item);	
-					
 					// L5:  if newgen is not a duplicate
 					if(isDuplicate(newgen_TIDs, preset) == false){
-						// L6: ClosedsetNew = newGen
-						int[] closedSetNew = newGen;	
-
-						// calculate tidset
-						UtilityList closedsetNewTIDs = newgen_TIDs;
-						
-						// L7 : PostsetNew = emptyset
-						List<UtilityList> postsetNew = new ArrayList<UtilityList>();
-						
-						// for each item J in the postset
-						boolean passedHUIPruning = true;
-						for(UtilityList jUL : postset) {
-							// if J is smaller than I according to the total order on items, we skip it
-							if(jUL.item.equals(iUL.item) || compareItems(jUL.item, iUL.item) < 0) continue;
-							
-							candidateCount++;
-							
-							if(containsAllTIDS(jUL, newgen_TIDs)) {
-								closedSetNew = appendItem(closedSetNew, jUL.item);	
-								closedsetNewTIDs = construct(closedsetNewTIDs, jUL);
-								
-								if(isPassingHUIPruning(closedsetNewTIDs) == false) {
-									passedHUIPruning = false;
-									break;
-								}
-							}
-							else postsetNew.add(jUL);
+						if (forks != null) {	// the subtree only needs a copy of the preset, hand it to the pool
+							SearchTask task = new SearchTask(closedSet, newgen_TIDs, iUL, preset.copy(), postset, ctx.depth);
+							task.fork();
+							forks.add(task);
 						}
-						
-						if(passedHUIPruning) {
-							// L15: write out Closed_setNew and its support
-							if(closedsetNewTIDs.sumIutils >= minUtil)
-								fileStore(closedSetNew, closedsetNewTIDs.sumIutils, closedsetNewTIDs.elements.size());
-							
-							// L16: recursive call, must make a copy of preset before the recursive call
-							List<UtilityList> presetNew = new ArrayList<UtilityList>(preset);
-							chuiMiner(false, closedSetNew, closedsetNewTIDs, presetNew, postsetNew);
+						else {
+							chuiBranch(ctx, closedSet, newgen_TIDs, iUL, preset, postset);
+							preset.truncate(presetSize);	// drop the lists pushed by the subtree
 						}
 						
 						// L17: Preset = Preset U {i}
 						preset.add(iUL);
+						presetSize++;
 					}
 				}	
 			}
+			
+			if (forks != null) {
+				if (ctx.depth == 0)
+					ctx.branches = forks;		// top-level subtrees are joined and written in order by the caller
+				else
+					for (SearchTask task : forks)
+						ctx.merge(task.join());
+			}
+		}
+		
+		// L3, L6-L16: closure of the generator "closedset U {i}", output and recursion
+		private void chuiBranch(SearchContext ctx, int [] closedSet, UtilityList newgen_TIDs, UtilityList iUL,
+				Preset preset, List<UtilityList> postset) throws IOException {
+			
+			// L3: newgen = closedset U {i}
+			// Create the itemset for newgen
+			int[] newGen = appendItem(closedSet, iUL.item);	
+			
+			// L6: ClosedsetNew = newGen
+			int[] closedSetNew = newGen;	
+
+			// calculate tidset
+			UtilityList closedsetNewTIDs = newgen_TIDs;
+			
+			// L7 : PostsetNew = emptyset
+			List<UtilityList> postsetNew = new ArrayList<UtilityList>();
+			
+			// for each item J in the postset
+			boolean passedHUIPruning = true;
+			for(UtilityList jUL : postset) {
+				// if J is smaller than I according to the total order on items, we skip it
+				if(jUL.item.equals(iUL.item) || compareItems(jUL.item, iUL.item) < 0) continue;
+				
+				ctx.candidateCount++;
+				
+				if(containsAllTIDS(jUL, newgen_TIDs)) {
+					closedSetNew = appendItem(closedSetNew, jUL.item);	
+					closedsetNewTIDs = construct(closedsetNewTIDs, jUL);
+					
+					if(isPassingHUIPruning(closedsetNewTIDs) == false) {
+						passedHUIPruning = false;
+						break;
+					}
+				}
+				else postsetNew.add(jUL);
+			}
+			
+			if(passedHUIPruning) {
+				// L15: write out Closed_setNew and its support
+				if(closedsetNewTIDs.sumIutils >= minUtil)
+					fileStore(ctx, closedSetNew, closedsetNewTIDs.sumIutils, closedsetNewTIDs.elements.size());
+				
+				// L16: recursive call, the subtree pushes on the preset, see Preset
+				ctx.depth++;
+				chuiMiner(ctx, false, closedSetNew, closedsetNewTIDs, preset, postsetNew);
+				ctx.depth--;
+			}
+		}
+		
+		// mine the levels on a fork/join pool, each level and its top-level subtrees run as
+		// tasks while the patterns are written level by level, subtree by subtree in sequential order
+		private void mineParallel(List<List<UtilityList>> ulLists, int maxLevel) throws IOException {
+			ForkJoinPool pool = new ForkJoinPool(parallelism);
+			try {
+				List<ForkJoinTask<SearchContext>> levels = new ArrayList<>();
+				for (int i = 0; i < maxLevel; i++)
+					levels.add(pool.submit(new LevelTask(ulLists.get(i))));
+				
+				for (ForkJoinTask<SearchContext> levelTask : levels) {
+					SearchContext root = levelTask.join();
+					flush(root);
+					if (root.branches != null)
+						for (SearchTask task : root.branches)
+							flush(task.join());
+				}
+			}
+			catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+			finally {
+				pool.shutdownNow();						// tasks are left running only when the run was cancelled
+			}
+		}
+		
+		// collect the counters of a finished task and write its patterns
+		private void flush(SearchContext ctx) throws IOException {
+			patternCount += ctx.patternCount;
+			candidateCount += ctx.candidateCount;
+			if (ctx.patterns != null)
+				for (Itemset p : ctx.patterns)
+					writePattern(p.itemset, p.utility, p.support);
+		}
+		
+		class LevelTask extends RecursiveTask<SearchContext> {		// top frame of a level
+			private static final long serialVersionUID = 1L;
+			final List<UtilityList> postset;
+			
+			LevelTask(List<UtilityList> postset) {
+				this.postset = postset;
+			}
+			
+			protected SearchContext compute() {
+				SearchContext ctx = new SearchContext(0, writer != null || sink != null);
+				try {
+					chuiMiner(ctx, true, new int[0], null, new Preset(), postset);
+				}
+				catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				return ctx;
+			}
+		}
+		
+		class SearchTask extends RecursiveTask<SearchContext> {		// one subtree of the search
+			private static final long serialVersionUID = 1L;
+			final int[] closedSet;
+			final UtilityList newgen, iUL;
+			final Preset preset;
+			final List<UtilityList> postset;
+			final int depth;
+			
+			SearchTask(int[] closedSet, UtilityList newgen, UtilityList iUL, Preset preset, List<UtilityList> postset, int depth) {
+				this.closedSet = closedSet;
+				this.newgen = newgen;
+				this.iUL = iUL;
+				this.preset = preset;
+				this.postset = postset;
+				this.depth = depth;
+			}
+			
+			protected SearchContext compute() {
+				SearchContext ctx = new SearchContext(depth, writer != null || sink != null);
+				try {
+					chuiBranch(ctx, closedSet, newgen, iUL, preset, postset);
+				}
+				catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				return ctx;
+			}
 		}
 
-		private UtilityList construct(UtilityList pX, UtilityList pY) {
+		UtilityList construct(UtilityList pX, UtilityList pY) {
 			
 			// create an empy utility list for pXY
 			UtilityList uXE = new UtilityList(pY.item);
@@ -514,13 +696,25 @@ import java.util.Map;
 			return newgen;
 		}
 	
-		private boolean isDuplicate(UtilityList newgenTIDs, List<UtilityList> preset) {
+		boolean isDuplicate(UtilityList newgenTIDs, Preset preset) {
+			List<Element> tidset = newgenTIDs.elements;
+			int support = tidset.size();
+			int first = (support > 0) ? tidset.get(0).tid : Integer.MAX_VALUE;
+			int last = (support > 0) ? tidset.get(support - 1).tid : Integer.MIN_VALUE;
+			long signature = newgenTIDs.signature;
 			// L25
-			// for each integer j in preset
-			for(UtilityList j : preset){				
+			// for each list j in preset, the newest first
+			for(int k = preset.size - 1; k >= 0; k--){
+				// no list from k down can hold the tidset
+				if(preset.maxSupports[k] < support || preset.minFirsts[k] > first || preset.maxLasts[k] < last
+						|| (signature & ~preset.allSignatures[k]) != 0) return false;
+				// j cannot hold the tidset
+				if(preset.supports[k] < support || preset.firsts[k] > first || preset.lasts[k] < last
+						|| (signature & ~preset.signatures[k]) != 0) continue;
+				UtilityList j = preset.lists[k];
 				// for each element in the utility list of pX
 				boolean containsAll = true;
-				for(Element elmX : newgenTIDs.elements){
+				for(Element elmX : tidset){
 					// do a binary search to find element ey in py with tid = ex.tid
 					Element elmE = findElementWithTID(j, elmX.tid);
 					if(elmE == null){
@@ -546,7 +740,7 @@ import java.util.Map;
 				return false;
 		}
 
-		private boolean containsAllTIDS(UtilityList ul1, UtilityList ul2) {
+		boolean containsAllTIDS(UtilityList ul1, UtilityList ul2) {
 			// for each integer j in preset
 			for(Element elmX : ul2.elements) {
 				// do a binary search to find element ey in py with tid = ex.tid
@@ -573,29 +767,27 @@ import java.util.Map;
 			listToAdd.add(new Itemset(itemset, sumIutils, support));
 		}
 		
-		private void fileStore(int[] itemset, double sumIutils, int support) throws IOException {
-			patternCount++; // increase the number of MLCHUIs found
+		private void fileStore(SearchContext ctx, int[] itemset, double sumIutils, int support) throws IOException {
+			ctx.patternCount++; // increase the number of MLCHUIs found
 			 
 			// if the user chose to save to memory
-			if(writer == null) {
+			if(writer == null && sink == null) {
 				//memStore(itemset, sumIutils, support);
 			}
+			else if (ctx.patterns != null) {
+				ctx.patterns.add(new Itemset(itemset, sumIutils, support));	// written later, in search order
+			}
 			else {
-				// If the user decide to save to file, create a string buffer
-				StringBuilder buffer = new StringBuilder();
-				for (int i = 0; i < itemset.length; i++) { // append the prefix
-					buffer.append(itemset[i]);
-					buffer.append(' ');
-				}
-		
-				buffer.append(" #SUP: ");	// append the support value
-				buffer.append(support);			
-				buffer.append(" #UTIL: ");	// append the utility value
-				buffer.append(sumIutils);	
-				writer.write(buffer.toString());	// write to file
-				writer.newLine();
+				writePattern(itemset, sumIutils, support);
 			}
 		}
+		
+		private void writePattern(int[] itemset, double sumIutils, int support) throws IOException {
+			if (sink != null)
+				sink.accept(new Itemset(itemset, sumIutils, support));
+			else
+				writer.write(itemset, null, support, sumIutils);	// encoded and written by the writer thread
+		}
 
 	    private double peakHeapUsage()
 	    {
@@ -627,6 +819,7 @@ import java.util.Map;
 			long runtime = timerStop - timerStart;
 			System.out.println("============= CHUI-MINER** STATISTICS =============");
 			System.out.println(" Given minutil     : " + this.minUtil);
+			System.out.println(" Worker threads    : " + (parallelism > 1 ? parallelism : 1));
 			System.out.println(" Approx runtime    : " + runtime + " ms ("+ runtime/1000.0 +" s)");
 			System.out.println(" Peak memory used  : " + this.peakHeapUsage()  + " MB");
 			System.out.println(" Pattern found     : " + this.patternCount); 
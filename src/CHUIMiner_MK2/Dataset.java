@@ -17,6 +17,11 @@ public class Dataset {
 	// main constructor
     public Dataset(String datasetPath, int maximumTransactionCount) throws IOException {
 
+        if (BinaryDataset.isBinary(datasetPath)) {		// pre-parsed dataset, see BinaryDataset
+        	transactions = BinaryDataset.readTransactions(datasetPath, maximumTransactionCount);
+        	computeStatistics();
+        	return;
+        }
         transactions = new ArrayList<Transaction>();	// Initialize a list to store transactions in memory
 
         BufferedReader br = new BufferedReader(new FileReader(datasetPath));
@@ -42,6 +47,25 @@ public class Dataset {
         br.close();
     }
 
+    // load the dataset with the memory-mapped parser, using 'threads' workers
+    public Dataset(String datasetPath, int maximumTransactionCount, int threads) throws IOException {
+        if (BinaryDataset.isBinary(datasetPath))
+        	transactions = BinaryDataset.readTransactions(datasetPath, maximumTransactionCount);
+        else
+        	transactions = new MappedDatasetReader("#%@").read(datasetPath, maximumTransactionCount, threads);
+        computeStatistics();
+    }
+
+    // statistics of transactions that were not read through createTransaction
+    private void computeStatistics() {
+        for (Transaction t : transactions) {
+        	for (int item : t.items)
+        		if (item > maxItem) maxItem = item;						// determine the largest item name
+        	if (maxTransLength < t.items.length) maxTransLength = t.items.length;
+        	sumTransLength += t.items.length;
+        }
+    }
+
     // create a transaction object from a string read from the input file
     private Transaction createTransaction(String line) {
     	
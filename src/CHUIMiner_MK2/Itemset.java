@@ -5,8 +5,8 @@ import java.util.Arrays;
  
 public class Itemset {
 	public int[] itemset;
-	double utility;
-	int support;
+	public double utility;
+	public int support;
 
 	public Itemset(int[] itemset, double utility, int support) {
 		this.itemset = itemset;
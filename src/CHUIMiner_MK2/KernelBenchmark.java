@@ -0,0 +1,101 @@
+package CHUIMiner_MK2;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+//	KernelBenchmark
+//	---------------
+//	Micro-benchmarks of the mining kernels of CHUIMinerMK2: construct,
+//	findElementWithTID, containsAllTIDS and isDuplicate. They run on the utility lists
+//	of a real dataset, using random pairs of base lists of the same level and their
+//	joins, as the first levels of the search see them.
+//	Every kernel runs warm-up passes, then measured passes, and the mean time per call
+//	is reported with its standard deviation.
+//
+//	Usage: KernelBenchmark <transactions> <taxonomy> <minutil> [samples] [iterations]
+public class KernelBenchmark {
+
+	static volatile long sink;		// results are folded in here so that the calls are not optimized away
+
+	// one call of a kernel on the sample-th input
+	interface Kernel {
+		long run(int sample);
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 3) {
+			System.out.println("Usage: KernelBenchmark <transactions> <taxonomy> <minutil> [samples] [iterations]");
+			return;
+		}
+		int samples = (args.length > 3) ? Integer.parseInt(args[3]) : 10000;
+		int iterations = (args.length > 4) ? Integer.parseInt(args[4]) : 10;
+
+		CHUIMinerMK2 algo = new CHUIMinerMK2();
+		algo.minUtil = Double.parseDouble(args[2]);
+		List<List<UtilityList>> ulLists = algo.buildUtilityLists(args[0], args[1], Integer.MAX_VALUE);
+
+		// inputs: x before y on the same level, their join, another list z of that level
+		// and the lists preceding x, which is the preset of the top search frame
+		Random random = new Random(42);
+		List<Integer> levels = new ArrayList<Integer>();
+		for (int level = 0; level < ulLists.size(); level++)
+			if (ulLists.get(level).size() > 1) levels.add(level);
+		if (levels.isEmpty()) {
+			System.out.println("- No level holds two promising items, lower minutil");
+			return;
+		}
+
+		UtilityList[] xs = new UtilityList[samples], ys = new UtilityList[samples], zs = new UtilityList[samples];
+		UtilityList[] joins = new UtilityList[samples];
+		Preset[] presets = new Preset[samples];
+		int[] tids = new int[samples];
+		for (int s = 0; s < samples; s++) {
+			List<UtilityList> uls = ulLists.get(levels.get(random.nextInt(levels.size())));
+			int i = random.nextInt(uls.size() - 1);
+			int j = i + 1 + random.nextInt(uls.size() - i - 1);
+			xs[s] = uls.get(i);
+			ys[s] = uls.get(j);
+			zs[s] = uls.get(random.nextInt(uls.size()));
+			UtilityList join = algo.construct(xs[s], ys[s]);
+			joins[s] = (join != null) ? join : xs[s];		// pruned joins are replaced by x for the containment kernels
+			presets[s] = new Preset(i);
+			for (int p = 0; p < i; p++) presets[s].add(uls.get(p));
+			List<Element> elements = xs[s].elements;		// a tid of x, looked up in y
+			tids[s] = elements.isEmpty() ? 0 : elements.get(random.nextInt(elements.size())).tid;
+		}
+
+		System.out.println("Benchmark                       Cnt          Score      Error  Units");
+		measure("construct", samples, iterations, s -> {
+			UtilityList r = algo.construct(xs[s], ys[s]);
+			return (r == null) ? 0 : r.elements.size();
+		});
+		measure("findElementWithTID", samples, iterations, s -> (algo.findElementWithTID(ys[s], tids[s]) == null) ? 0 : 1);
+		measure("containsAllTIDS", samples, iterations, s -> algo.containsAllTIDS(zs[s], joins[s]) ? 1 : 0);
+		measure("isDuplicate", samples, iterations, s -> algo.isDuplicate(joins[s], presets[s]) ? 1 : 0);
+	}
+
+	// run 'iterations' warm-up passes then 'iterations' measured passes over all the samples
+	static void measure(String name, int samples, int iterations, Kernel kernel) {
+		for (int it = 0; it < iterations; it++) pass(samples, kernel);
+		double[] scores = new double[iterations];
+		for (int it = 0; it < iterations; it++) {
+			long start = System.nanoTime();
+			pass(samples, kernel);
+			scores[it] = (System.nanoTime() - start) / (double) samples;
+		}
+		double mean = 0, variance = 0;
+		for (double score : scores) mean += score;
+		mean /= iterations;
+		for (double score : scores) variance += (score - mean) * (score - mean);
+		double error = (iterations > 1) ? Math.sqrt(variance / (iterations - 1)) : 0;
+		System.out.println(String.format("%-30s %4d %14.3f +- %7.3f  ns/op", name, iterations, mean, error));
+	}
+
+	private static void pass(int samples, Kernel kernel) {
+		long acc = 0;
+		for (int s = 0; s < samples; s++) acc += kernel.run(s);
+		sink += acc;
+	}
+}
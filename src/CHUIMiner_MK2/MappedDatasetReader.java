@@ -0,0 +1,223 @@
+package CHUIMiner_MK2;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+//	MappedDatasetReader
+//	-------------------
+//	Loads an SPMF transaction file without going through String: the file is split
+//	into byte ranges ending on line boundaries, every range is memory-mapped and
+//	parsed by a worker straight into the int[]/double[] arrays of its transactions.
+//	Ranges are concatenated in file order, so the result is identical to the
+//	line-by-line reader, including the comment rules and the transaction cap.
+class MappedDatasetReader {
+
+	static final long MAX_RANGE = 256L << 20;	// largest byte range mapped at once
+
+	private final String	comments;			// first characters marking a line to skip
+
+	MappedDatasetReader(String comments) {
+		this.comments = comments;
+	}
+
+	// read at most 'maxTrans' transactions from 'path' using 'threads' workers,
+	// all of them when 'maxTrans' <= 0 as for the line reader
+	List<Transaction> read(String path, int maxTrans, int threads) throws IOException {
+		if (maxTrans <= 0) maxTrans = Integer.MAX_VALUE;
+		List<Transaction> transactions = new ArrayList<Transaction>();
+		RandomAccessFile file = new RandomAccessFile(path, "r");
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(threads, 1));
+		try {
+			final FileChannel channel = file.getChannel();
+			long[] bounds = split(channel, threads);
+
+			List<Future<List<Transaction>>> parts = new ArrayList<Future<List<Transaction>>>();
+			for (int r = 0; r + 1 < bounds.length; r++) {
+				final long start = bounds[r], end = bounds[r+1];
+				parts.add(pool.submit(() -> parse(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start), start)));
+			}
+
+			for (Future<List<Transaction>> part : parts) {
+				if (transactions.size() >= maxTrans) {		// cap reached, the remaining ranges are not needed
+					part.cancel(true);
+					continue;
+				}
+				List<Transaction> range = part.get();
+				int room = maxTrans - transactions.size();
+				transactions.addAll(range.size() <= room ? range : range.subList(0, room));
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		}
+		catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+			if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();	// a malformed line
+			throw new IOException(e.getCause());
+		}
+		finally {
+			pool.shutdownNow();
+			file.close();
+		}
+		return transactions;
+	}
+
+	// range boundaries: about one range per worker, each ending right after a '\n'
+	private long[] split(FileChannel channel, int threads) throws IOException {
+		long length = channel.size();
+		int count = (int) Math.max(Math.max(threads, 1), (length + MAX_RANGE - 1) / MAX_RANGE);
+		List<Long> bounds = new ArrayList<Long>();
+		bounds.add(0L);
+		ByteBuffer probe = ByteBuffer.allocate(4096);
+		for (int r = 1; r < count; r++) {
+			long pos = Math.max(length * r / count, bounds.get(bounds.size() - 1));
+			boolean found = false;
+			while (!found && pos < length) {				// move forward to the next line start
+				probe.clear();
+				int n = channel.read(probe, pos);
+				if (n <= 0) break;
+				for (int i = 0; i < n; i++)
+					if (probe.get(i) == '\n') {
+						pos += i + 1;
+						found = true;
+						break;
+					}
+				if (!found) pos += n;
+			}
+			if (pos >= length) break;
+			if (pos > bounds.get(bounds.size() - 1)) bounds.add(pos);
+		}
+		bounds.add(length);
+		long[] result = new long[bounds.size()];
+		for (int i = 0; i < result.length; i++) result[i] = bounds.get(i);
+		return result;
+	}
+
+	// parse all the lines of a mapped range starting at byte 'base' of the file
+	private List<Transaction> parse(MappedByteBuffer buf, long base) {
+		List<Transaction> transactions = new ArrayList<Transaction>();
+		int limit = buf.limit();
+		int pos = 0;
+		while (pos < limit) {
+			int eol = pos;
+			while (eol < limit && buf.get(eol) != '\n') eol++;
+			int end = eol;
+			if (end > pos && buf.get(end - 1) == '\r') end--;		// CRLF line ending
+			if (end > pos && comments.indexOf(buf.get(pos)) < 0)		// bypass comments and empty lines
+				transactions.add(parseLine(buf, pos, end, base));
+			pos = eol + 1;
+		}
+		return transactions;
+	}
+
+	// parse "items:TU:utilities" held in buf[start, end), as Integer.parseInt would the
+	// items: anything but digits between the spaces is rejected, with its file offset.
+	// There must be one utility per item, single spaced, and nothing after the last one.
+	private Transaction parseLine(ByteBuffer buf, int start, int end, long base) {
+		int colon1 = start;
+		while (colon1 < end && buf.get(colon1) != ':') colon1++;
+		int colon2 = colon1 + 1;
+		while (colon2 < end && buf.get(colon2) != ':') colon2++;
+		if (colon2 >= end)
+			throw malformed(buf, start, end, base, start, "missing ':'");
+
+		int count = 0;												// count the items first
+		for (int i = start; i < colon1; i++)
+			if (buf.get(i) != ' ' && (i == start || buf.get(i - 1) == ' ')) count++;
+
+		int[] items = new int[count];
+		double[] utilities = new double[count];
+		int p = start;
+		for (int i = 0; i < count; i++) {
+			while (buf.get(p) == ' ') p++;
+			int value = 0;
+			byte b;
+			while (p < colon1 && (b = buf.get(p)) != ' ') {
+				if (b < '0' || b > '9' || value > (Integer.MAX_VALUE - (b - '0')) / 10)
+					throw malformed(buf, start, end, base, p, "bad item");
+				value = value * 10 + (b - '0');
+				p++;
+			}
+			items[i] = value;
+		}
+
+		p = colon2 + 1;
+		for (int i = 0; i < count; i++) {
+			if (i > 0) p++;											// the space after the previous utility
+			int q = p;
+			while (q < end && buf.get(q) != ' ') q++;
+			if (p >= end || q == p)
+				throw malformed(buf, start, end, base, Math.min(p, end), "missing utility");
+			utilities[i] = parseUtility(buf, p, q, start, end, base);
+			p = q;
+		}
+		while (p < end && buf.get(p) == ' ') p++;					// trailing spaces are dropped, as by split(" ")
+		if (p < end)
+			throw malformed(buf, start, end, base, p, "extra utility");
+
+		double transactionUtility = parseUtility(buf, colon1 + 1, colon2, start, end, base);
+		return new Transaction(items, utilities, transactionUtility);
+	}
+
+	// a utility in buf[p, q), a number Double.parseDouble rejects is reported with its offset
+	private static double parseUtility(ByteBuffer buf, int p, int q, int start, int end, long base) {
+		try {
+			return parseDouble(buf, p, q);
+		}
+		catch (NumberFormatException e) {
+			throw malformed(buf, start, end, base, p, "bad utility");
+		}
+	}
+
+	// the error of a malformed line, 'at' is the offending byte
+	private static NumberFormatException malformed(ByteBuffer buf, int start, int end, long base, int at, String reason) {
+		byte[] text = new byte[end - start];
+		for (int i = 0; i < text.length; i++) text[i] = buf.get(start + i);
+		return new NumberFormatException(reason + " at byte " + (base + at) + " of the file, in line \"" + new String(text) + "\"");
+	}
+
+	private static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+		1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	// parse a decimal number in buf[start, end). Up to 15 significant digits it is
+	// computed exactly as mantissa / 10^k, which is what Double.parseDouble returns,
+	// anything else (exponents, long mantissas, no digit at all) is handed to
+	// Double.parseDouble, which throws NumberFormatException on what is not a number.
+	static double parseDouble(ByteBuffer buf, int start, int end) {
+		int p = start;
+		boolean negative = false;
+		if (p < end && (buf.get(p) == '-' || buf.get(p) == '+')) negative = buf.get(p++) == '-';
+		long mantissa = 0;
+		int digits = 0, decimals = 0;
+		boolean dot = false, seen = false;						// seen: a digit was read
+		for (; p < end; p++) {
+			byte b = buf.get(p);
+			if (b >= '0' && b <= '9') {
+				mantissa = mantissa * 10 + (b - '0');
+				seen = true;
+				if (mantissa != 0) digits++;
+				if (dot) decimals++;
+			}
+			else if (b == '.' && !dot) dot = true;
+			else break;
+		}
+		if (p == end && seen && digits <= 15 && decimals < POWERS_OF_TEN.length) {
+			double value = (double) mantissa / POWERS_OF_TEN[decimals];
+			return negative ? -value : value;
+		}
+		byte[] text = new byte[end - start];						// slow path
+		for (int i = 0; i < text.length; i++) text[i] = buf.get(start + i);
+		return Double.parseDouble(new String(text));
+	}
+}
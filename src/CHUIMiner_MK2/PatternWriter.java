@@ -0,0 +1,194 @@
+package CHUIMiner_MK2;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.LockSupport;
+
+//	PatternWriter
+//	-------------
+//	Output stage of the miners. A pattern is copied as a compact record (item names,
+//	support, utility) into a slot of a bounded ring and the mining thread goes on.
+//	A background thread encodes the records into a reusable direct buffer, in the
+//	"items  #SUP: s #UTIL: u" format of the text output, and writes it through a
+//	FileChannel. Slots keep their item arrays, so a steady run allocates nothing.
+//	The mining thread only waits when the ring is full, for a slot, never for the disk.
+public class PatternWriter {
+
+	static final int	DEFAULT_SLOTS = 1 << 14;
+	static final int	BUFFER_BYTES = 1 << 16;
+	static final byte[]	NEWLINE = System.lineSeparator().getBytes();
+
+	// one pattern waiting to be encoded
+	static final class Slot {
+		int[]	items = new int[16];
+		int		length;
+		int		support;
+		double	utility;
+		double	threshold;				// sweep tag, NaN = none
+	}
+
+	private final Slot[]		ring;
+	private final int			mask;
+	private volatile long		head = 0;			// next slot to fill, written by the producer
+	private volatile long		tail = 0;			// next slot to encode, written by the writer thread
+	private volatile boolean	closed = false;
+	private volatile boolean	idle = false;		// the writer thread is parked on an empty ring
+	private volatile Throwable	failure = null;		// what stopped the writer thread
+
+	private final FileChannel	channel;
+	private ByteBuffer			buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+	private final byte[]		digits = new byte[20];
+	private final Thread		thread;
+
+	// open 'path' for writing, truncating it
+	public PatternWriter(String path) throws IOException {
+		this(path, DEFAULT_SLOTS);
+	}
+
+	// open 'path' with a ring of 'slots' slots, rounded up to a power of two
+	public PatternWriter(String path, int slots) throws IOException {
+		int size = Integer.highestOneBit(Math.max(slots - 1, 1)) << 1;
+		ring = new Slot[size];
+		for (int i = 0; i < size; i++) ring[i] = new Slot();
+		mask = size - 1;
+		channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		thread = new Thread(this::drain, "pattern-writer");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	// queue a pattern, items are written as names[item] when 'names' is given
+	public void write(int[] itemset, int[] names, int support, double utility) throws IOException {
+		write(itemset, names, support, utility, Double.NaN);
+	}
+
+	// queue a pattern tagged with the sweep threshold it meets
+	public synchronized void write(int[] itemset, int[] names, int support, double utility, double threshold) throws IOException {
+		if (failure != null) throwFailure();
+		long h = head;
+		while (h - tail > mask) {							// ring full: wait for a slot
+			if (failure != null) throwFailure();
+			LockSupport.parkNanos(10000);
+		}
+		Slot slot = ring[(int) h & mask];
+		if (slot.items.length < itemset.length) slot.items = new int[itemset.length];
+		for (int i = 0; i < itemset.length; i++)
+			slot.items[i] = (names != null) ? names[itemset[i]] : itemset[i];
+		slot.length = itemset.length;
+		slot.support = support;
+		slot.utility = utility;
+		slot.threshold = threshold;
+		head = h + 1;
+		if (idle) LockSupport.unpark(thread);
+	}
+
+	// write the queued patterns and close the file
+	public void close() throws IOException {
+		closed = true;
+		LockSupport.unpark(thread);
+		boolean interrupted = false;
+		while (thread.isAlive()) {
+			try {
+				thread.join();
+			}
+			catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) Thread.currentThread().interrupt();
+		channel.close();
+		if (failure != null) throwFailure();
+	}
+
+	// report the failure of the writer thread to the producer
+	private void throwFailure() throws IOException {
+		Throwable e = failure;
+		if (e instanceof IOException) throw (IOException) e;
+		if (e instanceof Error) throw (Error) e;
+		throw new IOException("Pattern writer failed", e);
+	}
+
+	// writer thread: encode the published slots, write the buffer when full or when the ring runs dry
+	private void drain() {
+		try {
+			while (true) {
+				long t = tail;
+				if (t == head) {
+					if (buffer.position() > 0) flush();
+					if (closed && t == head) break;
+					idle = true;
+					if (t == head && !closed) LockSupport.parkNanos(1000000);
+					idle = false;
+					continue;
+				}
+				encode(ring[(int) t & mask]);
+				tail = t + 1;
+			}
+		}
+		catch (Throwable e) {								// any failure, or the producer would wait forever
+			failure = e;
+			tail = Long.MAX_VALUE >> 1;					// unblock the producer, which reports the failure
+		}
+	}
+
+	private void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) channel.write(buffer);
+		buffer.clear();
+	}
+
+	// "i1 i2 ... in  #SUP: s #UTIL: u[ #MINUTIL: t]"
+	private void encode(Slot slot) throws IOException {
+		int worst = slot.length * 12 + 128;
+		if (buffer.remaining() < worst) {
+			flush();
+			if (buffer.capacity() < worst) buffer = ByteBuffer.allocateDirect(worst);
+		}
+		for (int i = 0; i < slot.length; i++) {
+			putLong(slot.items[i]);
+			buffer.put((byte) ' ');
+		}
+		putAscii(" #SUP: ");
+		putLong(slot.support);
+		putAscii(" #UTIL: ");
+		putDouble(slot.utility);
+		if (slot.threshold == slot.threshold) {
+			putAscii(" #MINUTIL: ");
+			putDouble(slot.threshold);
+		}
+		buffer.put(NEWLINE);
+	}
+
+	private void putAscii(String s) {
+		for (int i = 0; i < s.length(); i++) buffer.put((byte) s.charAt(i));
+	}
+
+	private void putLong(long v) {
+		if (v < 0) {
+			buffer.put((byte) '-');
+			v = -v;
+		}
+		int n = 0;
+		do {
+			digits[n++] = (byte) ('0' + v % 10);
+			v /= 10;
+		} while (v > 0);
+		while (n > 0) buffer.put(digits[--n]);
+	}
+
+	// same text as Double.toString: whole values below 10^7 are written as "n.0"
+	// without allocating, the others go through Double.toString
+	private void putDouble(double v) {
+		if (v == Math.rint(v) && Math.abs(v) < 1e7 && (v != 0 || 1 / v > 0)) {
+			putLong((long) v);
+			buffer.put((byte) '.');
+			buffer.put((byte) '0');
+		}
+		else
+			putAscii(Double.toString(v));
+	}
+}
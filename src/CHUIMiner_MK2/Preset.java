@@ -0,0 +1,95 @@
+package CHUIMiner_MK2;
+
+import java.util.Arrays;
+
+//	Preset
+//	------
+//	The preset of the search, held as one stack for a whole search path. A subtree
+//	pushes its lists above the ones of the frame it comes from, which cuts the stack
+//	back to its own size when the subtree returns: no level copies the preset, only
+//	a forked subtree gets a copy of its own.
+//	Every list is kept with its support, first and last tids and tidset signature
+//	(bit 'tid mod 64' set for each tid), and with the summary of these over the lists
+//	below it. A tidset contained in a list has no larger support, lies within its tid
+//	range and has its signature bits in the list's signature, so isDuplicate rules
+//	out most lists on these values and stops once the summary rules out the rest.
+final class Preset {
+
+	UtilityList[]	lists;
+	int[]			supports, firsts, lasts;
+	long[]			signatures;
+	int[]			maxSupports, minFirsts, maxLasts;	// over the lists 0..k
+	long[]			allSignatures;
+	int				size = 0;
+
+	Preset() {
+		this(16);
+	}
+
+	Preset(int capacity) {
+		capacity = Math.max(capacity, 1);
+		lists = new UtilityList[capacity];
+		supports = new int[capacity];
+		firsts = new int[capacity];
+		lasts = new int[capacity];
+		signatures = new long[capacity];
+		maxSupports = new int[capacity];
+		minFirsts = new int[capacity];
+		maxLasts = new int[capacity];
+		allSignatures = new long[capacity];
+	}
+
+	int size() {
+		return size;
+	}
+
+	// push a list on the preset
+	void add(UtilityList ul) {
+		if (size == lists.length) grow(size << 1);
+		int n = ul.elements.size();
+		int k = size++;
+		lists[k] = ul;
+		supports[k] = n;
+		firsts[k] = (n > 0) ? ul.elements.get(0).tid : Integer.MAX_VALUE;
+		lasts[k] = (n > 0) ? ul.elements.get(n - 1).tid : Integer.MIN_VALUE;
+		signatures[k] = ul.signature;
+		maxSupports[k] = (k > 0) ? Math.max(supports[k], maxSupports[k - 1]) : supports[k];
+		minFirsts[k] = (k > 0) ? Math.min(firsts[k], minFirsts[k - 1]) : firsts[k];
+		maxLasts[k] = (k > 0) ? Math.max(lasts[k], maxLasts[k - 1]) : lasts[k];
+		allSignatures[k] = (k > 0) ? signatures[k] | allSignatures[k - 1] : signatures[k];
+	}
+
+	// pop the lists above the first 'size' ones
+	void truncate(int size) {
+		Arrays.fill(lists, size, this.size, null);
+		this.size = size;
+	}
+
+	// a copy of the preset, for a forked subtree
+	Preset copy() {
+		Preset p = new Preset(size + 16);
+		System.arraycopy(lists, 0, p.lists, 0, size);
+		System.arraycopy(supports, 0, p.supports, 0, size);
+		System.arraycopy(firsts, 0, p.firsts, 0, size);
+		System.arraycopy(lasts, 0, p.lasts, 0, size);
+		System.arraycopy(signatures, 0, p.signatures, 0, size);
+		System.arraycopy(maxSupports, 0, p.maxSupports, 0, size);
+		System.arraycopy(minFirsts, 0, p.minFirsts, 0, size);
+		System.arraycopy(maxLasts, 0, p.maxLasts, 0, size);
+		System.arraycopy(allSignatures, 0, p.allSignatures, 0, size);
+		p.size = size;
+		return p;
+	}
+
+	private void grow(int capacity) {
+		lists = Arrays.copyOf(lists, capacity);
+		supports = Arrays.copyOf(supports, capacity);
+		firsts = Arrays.copyOf(firsts, capacity);
+		lasts = Arrays.copyOf(lasts, capacity);
+		signatures = Arrays.copyOf(signatures, capacity);
+		maxSupports = Arrays.copyOf(maxSupports, capacity);
+		minFirsts = Arrays.copyOf(minFirsts, capacity);
+		maxLasts = Arrays.copyOf(maxLasts, capacity);
+		allSignatures = Arrays.copyOf(allSignatures, capacity);
+	}
+}
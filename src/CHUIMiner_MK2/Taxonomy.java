@@ -5,51 +5,54 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.util.ArrayList;
+import java.util.Arrays;
 
 // Taxonomy
 // --------
-// Class to store a dataset's taxonomy on memory for quick access
+// Class to store a dataset's taxonomy on memory for quick access,
+// the parent of each child is kept in an array and indexed by TaxonomyIndex
 public class Taxonomy {
 
-	public class Tuple {				// representing a tuple consists of parent node and its child
-		Integer parent = 0;
-		Integer child = 0;
-		
-		Tuple(Integer p, Integer c) {	// default constructor
-			parent = p;
-			child = c;
-		}
-	}	
-
-	ArrayList<Tuple>	taxonomy;		// our taxonomy 
-	ArrayList<Integer>	parents;		// list of all parent nodes
+	int[]			parent;				// parent[child], 0 = none
+	int				tupleCount;			// number of tuples read
+	TaxonomyIndex	index = null;		// built on first use, dropped by add()
 	
 	// default constructor
 	public Taxonomy() { 				 
-		taxonomy = new ArrayList<>();
-		parents = new ArrayList<>();
+		parent = new int[16];
 	}
 
 	// another constructor
 	public Taxonomy(String filename) throws IOException { 
-		taxonomy = new ArrayList<>();
-		parents = new ArrayList<>();
-	
+		parent = new int[16];
 		load(filename);
 	}
 	
-	// add a tuple to the taxonomy 
-	public void add(Integer p, Integer c) {
-		taxonomy.add(new Tuple(p, c));
-		
-		if (!parents.contains(p)) {
-			parents.add(p);
-		}
+	// add a tuple to the taxonomy, a child added twice keeps its first parent
+	public void add(int p, int c) {
+		int top = Math.max(p, c);						// the parent is indexed too, its id may be the larger
+		if (top >= parent.length)
+			parent = Arrays.copyOf(parent, Math.max(top + 1, parent.length * 2));
+		if (parent[c] == 0) parent[c] = p;
+		tupleCount++;
+		index = null;
+	}
+	
+	// the array index of this taxonomy
+	public TaxonomyIndex index() {
+		TaxonomyIndex i = index;
+		if (i == null) index = i = new TaxonomyIndex(parent);
+		return i;
 	}
 	
 	// load taxonomy from text file
 	public void load(String filename) throws IOException {
+		if (BinaryDataset.isBinary(filename)) {					// tuples in file order, see BinaryDataset
+			int[][] tuples = BinaryDataset.readTuples(filename);
+			for (int i = 0; i < tuples[0].length; i++)
+				add(tuples[1][i], tuples[0][i]);
+			return;
+		}
 		BufferedReader	reader = new BufferedReader(new InputStreamReader(new FileInputStream(new File(filename))));
 		String			line;
 
@@ -61,8 +64,8 @@ public class Taxonomy {
 				}
 											
 				String	tokens[] = line.split(",");				// splitting string using ','														
-				Integer	child = Integer.parseInt(tokens[0]);	// child comes first								
-				Integer	parent = Integer.parseInt(tokens[1]);	// then its parent							
+				int		child = Integer.parseInt(tokens[0]);	// child comes first								
+				int		parent = Integer.parseInt(tokens[1]);	// then its parent							
 			
 				add(parent, child);								// then add this tuple into the list
 			}
@@ -77,29 +80,19 @@ public class Taxonomy {
 		}
 	}
 	
-	// access index-th parent
-	public Integer parent(int index) {
-		return taxonomy.get(index).parent;
-	}
-	
-	// access index-th child
-	public Integer child(int index) {
-		return taxonomy.get(index).child;
-	}
-
-	// access index-th tuple
-	public Tuple get(int index) {
-		return taxonomy.get(index);
+	// parent of a child, 0 if it has none
+	public int parent(int child) {
+		return index().parent(child);
 	}
 
 	// return the total tuples in the taxonomy 
 	public int size() {
-		return taxonomy.size();
+		return tupleCount;
 	}
 	
 	// return the number of parent nodes in the taxonomy - for statistics only
 	public int parentCount() {
-		return parents.size();
+		return index().parentCount();
 	}
 
 }
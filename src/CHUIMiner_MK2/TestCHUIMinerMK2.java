@@ -11,8 +11,9 @@ public class TestCHUIMinerMK2 {
 		String	trans = dataset + "_trans.txt";	// automatically identify one with transactions
 		String	tax = dataset + "_tax.txt";		// and its taxonomy
 		double	minutil = 40;					// user-specified minutil value
+		int		threads = 1;					// worker threads, 1 = sequential mining
 
-		CHUIMinerMK2 algo = new CHUIMinerMK2();
+		CHUIMinerMK2 algo = new CHUIMinerMK2(threads);
 		algo.runAlgorithm(trans, tax, "output_chuiminer_mk2.txt", minutil, Integer.MAX_VALUE);
 		algo.printStatistics();
 	}
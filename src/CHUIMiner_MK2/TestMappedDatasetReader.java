@@ -0,0 +1,37 @@
+package CHUIMiner_MK2;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+// TEST DRIVE FOR the memory-mapped loader: it must read the same transactions as the line reader
+public class TestMappedDatasetReader {
+
+	public static void main(String [] args) throws IOException {
+
+		String	dataset = "sample";				// name of your dataset
+		String	trans = dataset + "_trans.txt";	// automatically identify one with transactions
+		int		threads = 4;					// loader threads
+		int[]	caps = {0, -1, 1, 3, Integer.MAX_VALUE};	// 0 and below: no cap, as for the line reader
+
+		for (int cap : caps) {
+			List<Transaction> lines = new Dataset(trans, cap).getTransactions();
+			List<Transaction> mapped = new Dataset(trans, cap, threads).getTransactions();
+			compare(lines, mapped, cap);
+			System.out.println("maxTrans " + cap + ": " + mapped.size() + " transactions, same as the line reader");
+		}
+	}
+
+	// throw at the first transaction the two readers disagree on
+	private static void compare(List<Transaction> expected, List<Transaction> actual, int cap) {
+		if (expected.size() != actual.size())
+			throw new IllegalStateException("maxTrans " + cap + ": " + actual.size() + " transactions mapped, " + expected.size() + " read by lines");
+		for (int t = 0; t < expected.size(); t++) {
+			Transaction e = expected.get(t), a = actual.get(t);
+			if (!Arrays.equals(e.items, a.items) || !Arrays.equals(e.utilities, a.utilities)
+					|| e.transactionUtility != a.transactionUtility)
+				throw new IllegalStateException("maxTrans " + cap + ": transaction " + t + " differs");
+		}
+	}
+
+}
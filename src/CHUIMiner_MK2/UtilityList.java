@@ -32,6 +32,7 @@ public class UtilityList {
 	 double sumIutils = 0;  // the sum of item utilities
 	 double sumRutils = 0;  // the sum of remaining utilities
 	 List<Element> elements = new ArrayList<Element>();  // the elements
+	 long signature = 0;  // bit 'tid mod 64' set for each tid, see Preset
 	 
 	 
 	/**
@@ -49,6 +50,7 @@ public class UtilityList {
 	public void addElement(Element element){
 		sumIutils += element.iutils;
 		sumRutils += element.rutils;
+		signature |= 1L << element.tid;  // the shift distance is taken mod 64
 		elements.add(element);
 	}
 	
@@ -1,16 +1,23 @@
 package MLCMiner;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.management.ManagementFactory;
 import java.lang.management.MemoryPoolMXBean;
 import java.lang.management.MemoryType;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
 
 // MLC-Miner algorithm
 public class AlgoMLCMiner {
@@ -20,23 +27,56 @@ public class AlgoMLCMiner {
 	public int		patternCount = 0;
 	public int		candidateCount = 0;
 	public int		transCount = 0;
-	public double	minUtil = 0.0;
+	public volatile double	minUtil = 0.0;	// volatile: raised by top-k while workers prune, never read torn
 
 	public boolean	useEUCPstrategy = true;
+	public long		maxEUCSMatrixBytes = 256L << 20;	// per-level budget of the dense EUCS, sparse beyond it
+	public int		parallelism = 1;	// worker threads, 1 = sequential mining
+	public boolean	useBitmapTidsets = false;	// containment tests on compressed bitmaps instead of sorted arrays
+	public int		loaderThreads = 0;	// > 0: load the dataset with the memory-mapped parallel parser
+	public int		scanThreads = 0;	// > 1: both dataset scans run over tid ranges on this many threads, not when streaming
+	public boolean	streaming = false;	// read the dataset twice instead of keeping its transactions in memory
+	public int		forkDepth = 2;		// recursion depth up to which branches are forked as tasks
+	public boolean	mergeTransactions = true;	// merge identical per-level projections into one weighted element
+	public long		mergedCount = 0;	// projections merged into an earlier one, all levels
+	public double[]	thresholds = null;	// sweep mode: ascending minutils, set by runSweep
+	public int[]	thresholdCounts = null;	// sweep mode: patterns by highest threshold met
+	public int		topK = 0;			// > 0: keep the k patterns of highest utility, raising minUtil as they are found
+	public boolean	collectMetrics = false;	// count the search effort per level and depth, readable through JMX
+	SearchMetrics	metrics = null;
+	public boolean	fixedPointUtilities = false;	// int utility columns, when every utility is integral and within range
+	public boolean	dictionaryUtilities = false;	// fixed-point: dictionary-encode the repeated iutils of the base maps
+	boolean			fixedPoint = false;		// the maps of this run use the fixed-point layout
+	long			baseMapBytes = 0;		// heap taken by the columns of the base utility maps
+	public boolean	reuseBuffers = true;	// genCHUI temporaries come from a per-depth arena, see SearchContext
+	long			miningAllocatedBytes = -1;	// heap allocated by the mining loop, sequential runs
+	long			miningNanos = 0;
+	public int		subtreeEventDepth = 3;	// JFR: subtrees of the closed itemsets found above this depth are timed
+	boolean			timeEUCS = false;		// JFR: the projection phase is recorded, time the EUCS part
+	long			eucsNanos = 0;
+	public long		utilityMapBudget = 0;	// > 0: heap bytes for the base utility maps, beyond it the levels not being mined are spilled to a temp file
+	public boolean	offHeapUtilityMaps = false;	// keep the base utility maps and the dense EUCS in direct memory, freed level by level
+	UtilityMapStore	mapStore = null;
 	
 	Map<Integer, Integer> mapItemToLevel;
 	Map<Integer, List<Integer>> mapItemToAncestor;
 	
-	BufferedWriter		writer = null;
+	PatternWriter		writer = null;
+	Consumer<Pattern>	sink = null;			// publish(): receives the patterns instead of the writer
 	Taxonomy			taxonomy = null;
 	Dataset				dataset = null;
 	ArrayList<int[]>	oldNameToNewNamesPerLevel;
 	ArrayList<int[]>	newNamesToOldNamesPerLevel;
-	List<Map<Integer, Map<Integer, Double>>> EUCSPerLevel;	
+	List<EUCS>			EUCSPerLevel;
 	
 	ArrayList<EUList>	EULPerLevel;
 	double[] 			GWUs;
 	int 				itemsCountPerLevel[];
+	int					maxLevel = 0;	// taxonomy's depth
+	PriorityQueue<Pattern> topPatterns;	// top-k mode: the best patterns so far, lowest utility first
+	boolean				keepScanState = false;	// incremental mining: keep every item and the scan maps for later batches
+	int					firstDeltaTid = 0;		// incremental mining: only branches holding a tid from here on are mined
+	List<Map<ItemsKey, Integer>> mergeMapPerLevel;	// projection -> tid of its first transaction, second scan only
 
 	public boolean		debugging = false;
 	
@@ -44,11 +84,42 @@ public class AlgoMLCMiner {
 		int item = 0;
 		double utility = 0.0;
 	}
+	
+	// a sorted run of ints used as a hash key: the renamed items of a transaction's
+	// projection on a level, or the tidset of a utility map
+	static final class ItemsKey {
+		final int[] items;
+		final int hash;
+		
+		ItemsKey(List<Integer> list) {
+			items = new int[list.size()];
+			for (int i = 0; i < items.length; i++) items[i] = list.get(i);
+			hash = Arrays.hashCode(items);
+		}
+		
+		ItemsKey(int[] values, int length) {
+			items = Arrays.copyOf(values, length);
+			hash = Arrays.hashCode(items);
+		}
+		
+		public int hashCode() {
+			return hash;
+		}
+		
+		public boolean equals(Object o) {
+			return (o instanceof ItemsKey) && Arrays.equals(items, ((ItemsKey) o).items);
+		}
+	}
 
 	public AlgoMLCMiner(boolean useEUCP) {
 		useEUCPstrategy = useEUCP;
 	}
 	
+	public AlgoMLCMiner(boolean useEUCP, int threads) {
+		useEUCPstrategy = useEUCP;
+		parallelism = threads;
+	}
+
 	public AlgoMLCMiner() {
 		useEUCPstrategy = true;
 	}
@@ -56,32 +127,261 @@ public class AlgoMLCMiner {
 	public void runAlgorithm(String inputTransaction, String inputTaxonomy, String output, double minUtility, int maxTrans) throws IOException {
 		
 		minUtil				= minUtility;
-		mapItemToLevel		= new HashMap<Integer, Integer>();
-		mapItemToAncestor	= new HashMap<Integer, List<Integer>>();
-		
-		if (useEUCPstrategy) {
-			EUCSPerLevel = new ArrayList<Map<Integer, Map<Integer, Double>>>();
-		}
 				
 		if (output != null)			// output to file ?
-			writer = new BufferedWriter(new FileWriter(output));
+			writer = new PatternWriter(output);
 		else
 			writer = null;			// only return the pattern count
+		mapStore = null;		// the store of a previous run is closed already
 
-		timerStart = System.currentTimeMillis();
+		Throwable failure = null;
+		try {
+			timerStart = System.currentTimeMillis();
+		
+			buildUtilityMaps(inputTransaction, inputTaxonomy, maxTrans);
+			fixedPoint = fixedPointUtilities && compactUtilities();
+			baseMapBytes = 0;
+			for (EUList eul : EULPerLevel) baseMapBytes += UtilityMapStore.bytes(eul);
+			metrics = collectMetrics ? SearchMetrics.register(maxLevel) : null;
+			if (topK > 0) seedTopK();
+			mapStore = (utilityMapBudget > 0 || offHeapUtilityMaps) ? storeLevels() : null;
+		
+			System.out.println("- MLCHUI mining...");
+		
+			if (parallelism > 1)
+				mineParallel(maxLevel);
+			else {
+				long allocated = allocatedBytes(), started = System.nanoTime();
+				SearchContext ctx = new SearchContext(0, false);
+				for(int l = maxLevel-1; l >= 0; l--) {				
+					int level = (topK > 0) ? maxLevel-1 - l : l;	// top-k: general levels first, they raise minUtil fastest
+					EUList eul = EULPerLevel.get(level);
+					pageIn(level);
+					PhaseEvent phase = PhaseEvent.start("mining", level + 1);
+					long found = ctx.patternCount;
+					genCHUI(ctx, true, new int[0], null, new Preset(), eul, level);
+					phase.finish(ctx.patternCount - found);
+					pageOut(level);
+				}
+				patternCount += ctx.patternCount;
+				candidateCount += ctx.candidateCount;
+				thresholdCounts = SearchContext.addCounts(thresholdCounts, ctx.thresholdCounts);
+				miningAllocatedBytes = (allocated < 0) ? -1 : allocatedBytes() - allocated;
+				miningNanos = System.nanoTime() - started;
+			}
+			if (topK > 0) writeTopK();
+			
+			timerStop = System.currentTimeMillis();				// record end time
+		}
+		catch (Throwable e) {
+			failure = e;
+			throw e;
+		}
+		finally {
+			closeRun(failure);									// also when the run failed or was cancelled
+		}
+		
+		System.out.println("- Done.");
+	}
+	
+	// release what a run holds: the metrics MBean, the spill file or direct buffers of the
+	// stored maps and the output file with its writer thread. A failure of the run itself
+	// is not masked.
+	private void closeRun(Throwable failure) throws IOException {
+		if (metrics != null) metrics.unregister();
+		Throwable first = null;
+		try {
+			if (mapStore != null) mapStore.close();
+		}
+		catch (Throwable e) {
+			first = e;
+		}
+		try {
+			if (writer != null) writer.close();					// close the output file if present
+		}
+		catch (Throwable e) {
+			if (first == null) first = e;
+			else first.addSuppressed(e);
+		}
+		if (first == null) return;
+		if (failure != null) failure.addSuppressed(first);
+		else if (first instanceof IOException) throw (IOException) first;
+		else if (first instanceof RuntimeException) throw (RuntimeException) first;
+		else throw (Error) first;
+	}
+	
+	// publish the patterns of a run to a Flow subscriber as they are found, instead of
+	// writing them. The run starts on subscription, see PatternPublisher.
+	// Backpressure holds up the search when it is sequential only: parallel workers buffer
+	// the patterns of each top-level branch, which are published once the branch is done.
+	public Flow.Publisher<Pattern> publish(String inputTransaction, String inputTaxonomy, double minUtility, int maxTrans) {
+		return new PatternPublisher<Pattern>(patterns -> {
+			sink = patterns;
+			try {
+				runAlgorithm(inputTransaction, inputTaxonomy, null, minUtility, maxTrans);
+			}
+			finally {
+				sink = null;
+			}
+		}, Flow.defaultBufferSize());
+	}
+
+	// threshold sweep: a single run at the lowest of the given minutils, every pattern is
+	// tagged with the highest threshold it meets, so the results of each threshold are the
+	// patterns tagged with it or a higher one
+	public void runSweep(String inputTransaction, String inputTaxonomy, String output, double[] minUtilities, int maxTrans) throws IOException {
+		thresholds = minUtilities.clone();
+		Arrays.sort(thresholds);
+		thresholdCounts = new int[thresholds.length];
+		runAlgorithm(inputTransaction, inputTaxonomy, output, thresholds[0], maxTrans);
+	}
+	
+	// top-k: start from a threshold that k patterns are sure to reach. Each distinct tidset
+	// of a level is the tidset of one closed pattern, so the k-th largest utility among the
+	// closures of distinct tidsets bounds the k-th best utility. The closures of the items
+	// and item pairs of highest utility are computed exactly, for the other items the sum
+	// of the items sharing a tidset is used. Items whose GWU is below the seed can no
+	// longer appear in a result and are dropped.
+	private void seedTopK() {
+		topPatterns = new PriorityQueue<Pattern>(topK, (a, b) -> Double.compare(a.utility, b.utility));
+		PriorityQueue<Double> bounds = new PriorityQueue<Double>();
+		for (EUList eul : EULPerLevel) {
+			Map<ItemsKey, Double> closureUtility = new HashMap<ItemsKey, Double>();
+			Set<ItemsKey> exact = new HashSet<ItemsKey>();
+			for (int i = 0; i < eul.size(); i++) {
+				UtilityMap ul = eul.get(i);
+				closureUtility.merge(new ItemsKey(ul.tids, ul.size), ul.sumIutils, Double::sum);
+			}
+			
+			List<UtilityMap> best = new ArrayList<UtilityMap>(eul.list);
+			best.sort((a, b) -> Double.compare(b.sumIutils, a.sumIutils));
+			int seeds = Math.min(best.size(), (int) Math.sqrt(4.0 * topK) + 1);
+			for (int i = 0; i < seeds; i++)
+				for (int j = i; j < seeds; j++) {
+					UtilityMap x = best.get(i), y = best.get(j);
+					UtilityMap xy = (i == j) ? x : construct(x.item < y.item ? x : y, x.item < y.item ? y : x);
+					if (xy == null || xy.size == 0) continue;
+					ItemsKey tidset = new ItemsKey(xy.tids, xy.size);
+					if (exact.add(tidset))
+						closureUtility.put(tidset, closureUtility(xy, eul));
+				}
+			
+			for (double utility : closureUtility.values()) {
+				bounds.add(utility);
+				if (bounds.size() > topK) bounds.poll();
+			}
+		}
+		if (bounds.size() == topK && minUtil < bounds.peek())
+			minUtil = bounds.peek();
+		
+		for (int level = 0; level < maxLevel; level++) {
+			EUList eul = EULPerLevel.get(level), kept = new EUList();
+			int[] newNamesToOldNames = newNamesToOldNamesPerLevel.get(level);
+			for (int i = 0; i < eul.size(); i++)
+				if (GWUs[newNamesToOldNames[eul.get(i).item]] >= minUtil) kept.add(eul.get(i));
+			EULPerLevel.set(level, kept);
+		}
+		System.out.println("- Top-" + topK + " mining from minutil " + minUtil);
+	}
+	
+	// utility of the closure of a tidset: the items whose tidsets contain it, summed over it
+	private double closureUtility(UtilityMap tidset, EUList eul) {
+		double utility = 0;
+		for (int i = 0; i < eul.size(); i++) {
+			UtilityMap z = eul.get(i);
+			if (!z.containsAllTIDs(tidset)) continue;
+			for (int t = 0, p = 0; t < tidset.size; t++, p++) {
+				while (z.tids[p] < tidset.tids[t]) p++;
+				utility += z.iutil(p);
+			}
+		}
+		return utility;
+	}
+	
+	// top-k: keep a pattern if it is among the k best so far, then raise minUtil to the
+	// utility of the k-th best once k patterns are known. minUtil is volatile, so other
+	// mining threads read either value whole, a join already running keeps the older one,
+	// which only delays its pruning.
+	private synchronized void offerTopK(Pattern pattern) {
+		if (topPatterns.size() == topK) {
+			if (pattern.utility <= topPatterns.peek().utility) return;
+			topPatterns.poll();
+		}
+		topPatterns.add(pattern);
+		if (topPatterns.size() == topK && minUtil < topPatterns.peek().utility)
+			minUtil = topPatterns.peek().utility;
+	}
+	
+	// top-k: write the patterns kept, highest utility first
+	private void writeTopK() throws IOException {
+		List<Pattern> best = new ArrayList<Pattern>(topPatterns);
+		best.sort((a, b) -> {							// ties in search-independent order
+			int c = Double.compare(b.utility, a.utility);
+			if (c == 0) c = a.level - b.level;
+			for (int i = 0; c == 0 && i < Math.min(a.itemset.length, b.itemset.length); i++)
+				c = a.itemset[i] - b.itemset[i];
+			return (c == 0) ? a.itemset.length - b.itemset.length : c;
+		});
+		patternCount = best.size();
+		for (Pattern p : best)
+			outputToFile(p.itemset, p.utility, p.support, p.level);
+	}
+	
+	// both dataset scans: GWUs and renaming, then the utility maps and EUCS of every level
+	void buildUtilityMaps(String inputTransaction, String inputTaxonomy, int maxTrans) throws IOException {
+		
+		mapItemToLevel		= new HashMap<Integer, Integer>();
+		mapItemToAncestor	= new HashMap<Integer, List<Integer>>();
+		
+		if (useEUCPstrategy) {
+			EUCSPerLevel = new ArrayList<EUCS>();
+		}
 		
 		System.out.println("- First dataset scan...");		
-		dataset = new Dataset(inputTransaction, maxTrans);	// should perform similar transaction merging here, too		
-		transCount = dataset.getTransactions().size();
-		taxonomy = new Taxonomy(inputTaxonomy, dataset);		
-		int maxLevel = scanDatabaseFirstTime();	// taxonomy's depth
+		maxLevel = 0;
+		PhaseEvent phase;
+		if (streaming) {							// only the GWUs and the taxonomy maps are kept
+			dataset = new Dataset();
+			phase = PhaseEvent.start("taxonomy", 0);
+			taxonomy = new Taxonomy(inputTaxonomy, dataset);
+			taxonomy.index();
+			phase.finish(taxonomy.parentCount());
+			GWUs = new double[dataset.getMaxItem() + 1];
+			phase = PhaseEvent.start("GWU scan", 0);		// the load is part of this scan
+			dataset.stream(inputTransaction, maxTrans, (t, tid) -> scanTransactionFirstTime(t));
+			phase.finish(dataset.getTransactionCount());
+		}
+		else {
+			phase = PhaseEvent.start("load", 0);
+			if (loaderThreads > 0)
+				dataset = new Dataset(inputTransaction, maxTrans, loaderThreads);
+			else
+				dataset = new Dataset(inputTransaction, maxTrans);
+			phase.finish(dataset.getTransactionCount());
+			phase = PhaseEvent.start("taxonomy", 0);
+			taxonomy = new Taxonomy(inputTaxonomy, dataset);		
+			taxonomy.index();
+			phase.finish(taxonomy.parentCount());
+			phase = PhaseEvent.start("GWU scan", 0);
+			if (scanThreads > 1) {
+				GWUs = new double[dataset.getMaxItem() + 1];
+				if (!new ParallelScan(this, dataset.getTransactions(), scanThreads).scanFirstTime())
+					scanDatabaseFirstTime();				// transactions holding ancestors, see ParallelScan
+			}
+			else
+				scanDatabaseFirstTime();
+			phase.finish(dataset.getTransactionCount());
+		}
+		transCount = dataset.getTransactionCount();
+		int maxLevel = this.maxLevel;
 				
+		phase = PhaseEvent.start("rename", 0);
 		ArrayList<ArrayList<Integer>> itemsToKeepPerLevel = new ArrayList<ArrayList<Integer>>();
 		itemsCountPerLevel = new int[maxLevel];
 		for (int i = 0; i < maxLevel; i++)
 			itemsToKeepPerLevel.add(new ArrayList<Integer>());
 		for (int item = 1; item < GWUs.length; item++)
-			if (GWUs[item] >= minUtil) {
+			if ((keepScanState || GWUs[item] >= minUtil) && mapItemToLevel.containsKey(item)) {	// skip names absent from data and taxonomy
 				itemsToKeepPerLevel.get(mapItemToLevel.get(item) - 1).add(item);
 			}
 		sort(itemsToKeepPerLevel, GWUs);
@@ -94,10 +394,8 @@ public class AlgoMLCMiner {
 			int itemsPerLevel = itemsToKeep.size();
 			itemsCountPerLevel[i] = itemsPerLevel;
 			
-			if (useEUCPstrategy) {
-				Map<Integer, Map<Integer, Double>>EUCS = new HashMap<Integer, Map<Integer, Double>>();
-				EUCSPerLevel.add(EUCS);
-			}
+			if (useEUCPstrategy)
+				EUCSPerLevel.add(new EUCS(itemsPerLevel, maxEUCSMatrixBytes, offHeapUtilityMaps));
 			
 			int[] oldNameToNewNames = new int[dataset.getMaxItem() + 1];
 			
@@ -115,6 +413,9 @@ public class AlgoMLCMiner {
 			oldNameToNewNamesPerLevel.add(oldNameToNewNames);
 			newNamesToOldNamesPerLevel.add(newNamesToOldNames);
 		}
+		long renamed = 0;
+		for (int count : itemsCountPerLevel) renamed += count;
+		phase.finish(renamed);
 		
 		Map<Integer, UtilityMap> mapItemToUM = new HashMap<Integer, UtilityMap>();
 		for (int i = 0; i < maxLevel; i++) {
@@ -143,158 +444,184 @@ public class AlgoMLCMiner {
 				EULPerLevel.get(i).add(new UtilityMap(j + 1));
 		}
 		
-		for (Transaction t : dataset.transactions) {
-			t.setLevelTransaction(maxLevel);
-			t.removeUnpromisingItems(oldNameToNewNamesPerLevel, mapItemToAncestor, mapItemToLevel);
-		}
-				
 		System.out.println("- Constructing UM/EUCS for " + maxLevel + " level(s)...");
 		
-		for (int tid = 0; tid < transCount; tid++) {
-			Transaction tran = dataset.transactions.get(tid);		
-			if (tran.items.length == 0) continue;			
-			for (int i = 0; i < maxLevel; i++) {
-				if (tran.listTransactionUtility.get(i) == 0) continue;
-
-				double ru = 0;
-				ArrayList<Integer> itemInTransactionInLevel = tran.listItemsPerLevel.get(i);
-				ArrayList<Double> UtilityInTransactionInLevel = tran.listUtilitiesPerLevel.get(i);
-				for (int j = itemInTransactionInLevel.size() - 1; j >= 0; j--) {
-					int item = itemInTransactionInLevel.get(j);
-					double nU = UtilityInTransactionInLevel.get(j);
-					Element element = new Element(tid, nU, ru);					
-					UtilityMap ulItem = EULPerLevel.get(i).get(item-1);
-					if (ulItem != null) {
-						ulItem.addElement(element);
-					}
-					ru = ru + nU;
-				}
+		phase = PhaseEvent.start("projection", 0);
+		timeEUCS = phase.isEnabled();
+		eucsNanos = 0;
+		mergedCount = 0;
+		if (mergeTransactions) {
+			mergeMapPerLevel = new ArrayList<Map<ItemsKey, Integer>>();
+			for (int i = 0; i < maxLevel; i++)
+				mergeMapPerLevel.add(new HashMap<ItemsKey, Integer>());
+		}
+		if (streaming)								// second pass: feed each transaction without keeping it
+			new Dataset().stream(inputTransaction, maxTrans, (t, tid) -> addTransaction(t, tid));
+		else if (scanThreads > 1)
+			new ParallelScan(this, dataset.getTransactions(), scanThreads).scanSecondTime();
+		else
+			for (int tid = 0; tid < transCount; tid++)
+				addTransaction(dataset.transactions.get(tid), tid);
 
-				// Build EUCS
-				if (useEUCPstrategy) {				
-					int count = itemInTransactionInLevel.size();
-					double tu = tran.listTransactionUtility.get(i);
-					for (int u = 0; u < count - 1; u++) {
-						int itemU = itemInTransactionInLevel.get(u);
-
-						Map<Integer, Double> mapFMAPItem = EUCSPerLevel.get(i).get(itemU);
-						if (mapFMAPItem == null) {
-							mapFMAPItem = new HashMap<Integer, Double>();
-							EUCSPerLevel.get(i).put(itemU, mapFMAPItem);
-						} // if
-						
-						for (int v = u + 1; v < count; v++) {
-							Integer itemV = itemInTransactionInLevel.get(v);
-							Double twuSum = mapFMAPItem.get(itemV);
-							if(twuSum == null)
-								mapFMAPItem.put(itemV, tu);
-							else	
-								mapFMAPItem.put(itemV, twuSum + tu);	
-						}
-					}
-				}
+		for (EUList eul : EULPerLevel)
+			for (int j = 0; j < eul.size(); j++) {
+				eul.get(j).trimToSize();
+				if (useBitmapTidsets) eul.get(j).tidset();	// base lists are shared by all branches, build once
 			}
-		};	
+		phase.eucsTime = eucsNanos;
+		phase.finish(transCount);
+		timeEUCS = false;
 
 		// reduce memory usage
-		mapItemToLevel = null;
-		mapItemToAncestor = null;
+		mergeMapPerLevel = null;
 		dataset = null;
-		taxonomy = null;
-		
-		System.out.println("- MLCHUI mining...");
-		
-		for(int level = maxLevel-1; level >= 0; level--) {				
-			EUList eul = EULPerLevel.get(level);
-			genCHUI(true, new int[0], null, new EUList(), eul, level);
+		if (!keepScanState) {
+			mapItemToLevel = null;
+			mapItemToAncestor = null;
+			taxonomy = null;
 		}
-		
-		timerStop = System.currentTimeMillis();					// record end time
-		if (writer != null)  writer.close();					// close the output file if present
-		
-		System.out.println("- Done.");
 	}
 	
-	private int scanDatabaseFirstTime() {
-		int maxLevel = 0;	
+	private void scanDatabaseFirstTime() {
 		GWUs = new double[dataset.getMaxItem() + 1];
-		for (int tid = 0; tid < transCount; tid++) {
-			
-    		Transaction transaction = dataset.getTransactions().get(tid);
-			ArrayList<Integer> anscestorExist = new ArrayList<Integer>();
-			int[] transItems = transaction.getItems();
-			
-			double transactionUtility = transaction.getUtility();
-					
-			// for each item, add the transaction utility to its GWU
-			for(int i = 0; i < transItems.length; i++) {
-				int item = transItems[i];
-
-				GWUs[item] += transactionUtility;
-				ArrayList<Integer> ancestor = new ArrayList<Integer>();								
-				ancestor.add(item);				
+		for (Transaction transaction : dataset.getTransactions())
+			scanTransactionFirstTime(transaction);
+	}
+	
+	// first scan of a transaction: GWUs, ancestors and levels of its items
+	void scanTransactionFirstTime(Transaction transaction) {
+		ArrayList<Integer> anscestorExist = new ArrayList<Integer>();
+		TaxonomyIndex index = taxonomy.index();
+		int[] transItems = transaction.getItems();
+		
+		double transactionUtility = transaction.getUtility();
+		
+		for(int i = 0; i < transItems.length; i++)		// a streamed item may be larger than the taxonomy's ones
+			if (transItems[i] >= GWUs.length)
+				GWUs = Arrays.copyOf(GWUs, Math.max(transItems[i] + 1, GWUs.length * 2));
 				
-				if (mapItemToAncestor.get(item) == null) {						
-					Integer itemCopy = item;		
-					while (itemCopy != null) {
-						Integer childItem = itemCopy;
-						Integer parentItem = taxonomy.mapChildToParent.get(childItem);
-						if (parentItem != null) {
-							ancestor.add(parentItem);
-							if (!anscestorExist.contains(parentItem)) {
-								anscestorExist.add(parentItem);
-								Double twuParent = GWUs[parentItem];
-								twuParent = (twuParent == null) ? transactionUtility : transactionUtility + twuParent;
-								GWUs[parentItem] = twuParent; 
-							}
-						}
-						itemCopy = parentItem;
-					}					
-					
-					int k = ancestor.size();
-					for(int j = 0; j < ancestor.size(); j++, k--) {
-						mapItemToLevel.put(ancestor.get(j), k);
-						if (maxLevel < k) maxLevel = k; // save the taxonomy depth
-					}
-															
-					for (int itemKey = 0; itemKey < ancestor.size();itemKey++) {
-						List<Integer> itemValue = new ArrayList<>();
-						for (int listValue = 0; listValue < ancestor.size(); listValue++)
-							itemValue.add(ancestor.get(listValue));
-						mapItemToAncestor.put(ancestor.get(itemKey), itemValue);
+		// for each item, add the transaction utility to its GWU
+		for(int i = 0; i < transItems.length; i++) {
+			int item = transItems[i];
+
+			GWUs[item] += transactionUtility;
+			
+			if (mapItemToAncestor.get(item) == null) {						
+				List<Integer> ancestor = registerItem(item, index);
+				for (int a = 1; a < ancestor.size(); a++) {
+					Integer parentItem = ancestor.get(a);
+					if (!anscestorExist.contains(parentItem)) {
+						anscestorExist.add(parentItem);
+						GWUs[parentItem] += transactionUtility;
 					}
-				} 
-				else {
-					List<Integer> ancestorsList = mapItemToAncestor.get(item);
-					
-					for(int k = 0; k < ancestorsList.size(); k++) {
-						if(!anscestorExist.contains(ancestorsList.get(k))) {
-							anscestorExist.add(ancestorsList.get(k));
-							Double twuParent = GWUs[ancestorsList.get(k)];
-							twuParent += transaction.getUtility();
-							GWUs[ancestorsList.get(k)] = twuParent;
-						}
+				}
+			} 
+			else {
+				List<Integer> ancestorsList = mapItemToAncestor.get(item);
+				
+				for(int k = 0; k < ancestorsList.size(); k++) {
+					if(!anscestorExist.contains(ancestorsList.get(k))) {
+						anscestorExist.add(ancestorsList.get(k));
+						Double twuParent = GWUs[ancestorsList.get(k)];
+						twuParent += transaction.getUtility();
+						GWUs[ancestorsList.get(k)] = twuParent;
 					}
 				}
-			} 			
+			}
+		} 			
+	}
+	
+	// first sighting of an item: record the levels of the item and of its ancestors, and
+	// map each of them to the item's path, from the item up to its root
+	List<Integer> registerItem(int item, TaxonomyIndex index) {
+		ArrayList<Integer> ancestor = new ArrayList<Integer>();
+		ancestor.add(item);
+		int depth = index.depth(item);
+		for (int a = 1; a < depth; a++)				// ancestors from the flattened path
+			ancestor.add(index.ancestor(item, a));
+		
+		int k = ancestor.size();
+		for(int j = 0; j < ancestor.size(); j++, k--) {
+			mapItemToLevel.put(ancestor.get(j), k);
+			if (maxLevel < k) maxLevel = k; // save the taxonomy depth
+		}
+		for (int itemKey = 0; itemKey < ancestor.size();itemKey++)
+			mapItemToAncestor.put(ancestor.get(itemKey), new ArrayList<Integer>(ancestor));
+		return ancestor;
+	}
+	
+	// second scan of a transaction: project it onto every level, then add it to the
+	// utility maps and the EUCS of each level. Its projections are released afterwards.
+	// A projection identical to an earlier one is merged into that transaction's elements.
+	void addTransaction(Transaction tran, int tid) {
+		if (tran.items.length == 0) return;
+		tran.setLevelTransaction(maxLevel);
+		tran.removeUnpromisingItems(oldNameToNewNamesPerLevel, mapItemToAncestor, mapItemToLevel);
+		addProjections(tran, tid);
+		tran.releaseLevels();
+	}
+	
+	// add the projections of a transaction on every level to the utility maps and the EUCS
+	void addProjections(Transaction tran, int tid) {
+		for (int i = 0; i < maxLevel; i++) {
+			if (tran.listTransactionUtility.get(i) == 0) continue;
+
+			double ru = 0;
+			ArrayList<Integer> itemInTransactionInLevel = tran.listItemsPerLevel.get(i);
+			ArrayList<Double> UtilityInTransactionInLevel = tran.listUtilitiesPerLevel.get(i);
+			Integer first = null;
+			if (mergeMapPerLevel != null) {
+				first = mergeMapPerLevel.get(i).putIfAbsent(new ItemsKey(itemInTransactionInLevel), tid);
+				if (first != null) mergedCount++;
+			}
+			for (int j = itemInTransactionInLevel.size() - 1; j >= 0; j--) {
+				int item = itemInTransactionInLevel.get(j);
+				double nU = UtilityInTransactionInLevel.get(j);
+				UtilityMap ulItem = EULPerLevel.get(i).get(item-1);
+				if (ulItem != null) {
+					if (first == null)
+						ulItem.addElement(tid, nU, ru);
+					else
+						ulItem.mergeElement(first, nU, ru);
+				}
+				ru = ru + nU;
+			}
+
+			// Build EUCS
+			if (useEUCPstrategy) {				
+				long start = timeEUCS ? System.nanoTime() : 0;
+				EUCS eucs = EUCSPerLevel.get(i);
+				int count = itemInTransactionInLevel.size();
+				double tu = tran.listTransactionUtility.get(i);
+				for (int u = 0; u < count - 1; u++) {
+					int itemU = itemInTransactionInLevel.get(u);
+					for (int v = u + 1; v < count; v++)
+						eucs.add(itemU, itemInTransactionInLevel.get(v), tu);
+				}
+				if (timeEUCS) eucsNanos += System.nanoTime() - start;
+			}
 		}
-		return maxLevel;
 	}
 	
 	private int compareItems(int item1, int item2) {			// compare items by their names
 		return item1 - item2;
 	}
 
-	private void genCHUI(boolean firstTime, int [] closedSet, UtilityMap closedSetUL, EUList preset, EUList postset, int level) throws IOException {
+	void genCHUI(SearchContext ctx, boolean firstTime, int [] closedSet, UtilityMap closedSetUL, Preset preset, EUList postset, int level) throws IOException {
 		
+		List<BranchTask> forks = (parallelism > 1 && ctx.depth < forkDepth) ? new ArrayList<BranchTask>() : null;
+		int presetSize = preset.size();						// the preset of this frame, its subtrees push above it
+		UtilityMap arenaNewgen = (reuseBuffers && forks == null) ? ctx.frame().newgen : null;	// forked branches keep their own
 		int isize = postset.size();							// L2: for all i in postset
 		for (int i = 0; i < isize; i++) {
 			UtilityMap iUL = postset.get(i);
 			
 			// L4: determine the tidset of the new generator 'closedset ∪ {i}'
 			UtilityMap newgen_TIDs;
-			if (!firstTime)									// if not first time running
-				newgen_TIDs = construct(closedSetUL, iUL);	// intersect the tidset of closedset and the tidset of i
+			if (!firstTime) {								// if not first time running
+				newgen_TIDs = construct(closedSetUL, iUL, arenaNewgen);	// intersect the tidset of closedset and the tidset of i
+				if (metrics != null) metrics.construct(level, ctx.depth, newgen_TIDs);
+			}
 			else
 				newgen_TIDs = iUL;							// iUL is its tidset
 				
@@ -302,114 +629,381 @@ public class AlgoMLCMiner {
 			if(isPromising(newgen_TIDs)) {
 
 				// L5: if newgen is not a duplicate
-				if(!isDuplicate(newgen_TIDs, preset)) {
-
-					// L6: ClosedsetNew = closedset ∪ {i}, create the itemset for newgen
-					int[] closedSetNew = appendItem(closedSet, iUL.item);	
-
-					UtilityMap closedsetNewTIDs = newgen_TIDs; // CALCULATE TIDSET
-					
-					// L7 : PostsetNew = emptyset
-					EUList newPost = new EUList();
-					
-					// for each item J in the postset
-					boolean isHUI = true;
-					int jsize = postset.size();
-					for (int j = 0; j < jsize; j++) {
-					
-						UtilityMap jUL = postset.get(j);
-						
-						// if J is smaller than I according to the total order on items, we skip it
-						if(jUL.item == iUL.item || compareItems(jUL.item, iUL.item) < 0) continue;
-
-						// EUCP
-						if (useEUCPstrategy && isPrunableByEUCS(iUL.item, jUL.item, level)) continue;
-						
-						candidateCount++;
-						
-						if(hasAllTIDS(jUL, newgen_TIDs)) {
-							closedSetNew = appendItem(closedSetNew, jUL.item);	
-							closedsetNewTIDs = construct(closedsetNewTIDs, jUL);
-							
-							if(!isPromising(closedsetNewTIDs)) {
-								isHUI = false;
-								break;
-							}
+				boolean duplicate = isDuplicate(newgen_TIDs, preset);
+				if (metrics != null) metrics.duplicate(level, ctx.depth, duplicate);
+				if(!duplicate) {
+					if (holdsDeltaTid(newgen_TIDs)) {		// incremental: branches without new tids are unchanged
+						if (forks != null) {				// mine the branch as a task, on a copy of the preset
+							BranchTask task = new BranchTask(closedSet, newgen_TIDs, iUL, preset.copy(), postset, level, ctx.depth);
+							task.fork();
+							forks.add(task);
+						}
+						else {
+							genBranch(ctx, closedSet, newgen_TIDs, iUL, preset, postset, level);
+							preset.truncate(presetSize);	// drop the maps pushed by the subtree
 						}
-						else newPost.add(jUL);
-					}
-					
-					if(isHUI) {
-						// L15: write out Closed_setNew and its support
-						if (minUtil <= closedsetNewTIDs.sumIutils)
-							output(closedSetNew, closedsetNewTIDs.sumIutils, closedsetNewTIDs.getSupport(), level);
-						
-						// L16: recursive call, must make a copy of preset before the recursive call
-						EUList newPre = new EUList(preset);
-						genCHUI(false, closedSetNew, closedsetNewTIDs, newPre, newPost, level);
 					}
 					preset.add(iUL);	// L17: preset = preset ∪ {i}
+					presetSize++;
 				}
 			}	
 		}
+		
+		if (forks != null) {
+			if (ctx.depth == 0)
+				ctx.branches = forks;		// top-level branches are joined and written in order by the caller
+			else
+				for (BranchTask task : forks)
+					ctx.merge(task.join());
+		}
 	}
 	
-	// Find the element with a given tid in a utility map. Complexity: O(1)
-	private Element elementByTID(UtilityMap ulist, int tid) {
-		Element e = ulist.mapElements.get(tid);
-		if (e != null)
-			return e;
-		return null; // not found
-	}
+	// L6-L16: compute the closure of the generator 'closedset ∪ {i}', output it and mine its subtree
+	private void genBranch(SearchContext ctx, int [] closedSet, UtilityMap newgen_TIDs, UtilityMap iUL, Preset preset, EUList postset, int level) throws IOException {
+
+		SubtreeEvent event = null;							// JFR: time the subtrees near the root
+		if (ctx.depth < subtreeEventDepth) {
+			event = new SubtreeEvent();
+			if (event.isEnabled()) {
+				event.begin();
+				event.candidates = ctx.candidateCount;
+				event.patterns = ctx.patternCount;
+			}
+			else event = null;
+		}
+
+		SearchContext.Frame frame = reuseBuffers ? ctx.frame() : null;
+
+		// L6: ClosedsetNew = closedset ∪ {i}, gathered in the item buffer of the frame
+		int[] closedItems = (frame != null) ? frame.items : new int[closedSet.length + 1 + postset.size()];
+		if (closedItems.length < closedSet.length + 1 + postset.size())
+			frame.items = closedItems = new int[Math.max(closedSet.length + 1 + postset.size(), closedItems.length * 2)];
+		System.arraycopy(closedSet, 0, closedItems, 0, closedSet.length);
+		int itemCount = closedSet.length;
+		closedItems[itemCount++] = iUL.item;
+
+		UtilityMap closedsetNewTIDs = newgen_TIDs; // CALCULATE TIDSET
+		
+		// L7 : PostsetNew = emptyset
+		EUList newPost;
+		if (frame != null) {
+			newPost = frame.post;
+			newPost.clear();
+		}
+		else
+			newPost = new EUList();
+		
+		// for each item J in the postset
+		boolean isHUI = true;
+		int jsize = postset.size();
+		for (int j = 0; j < jsize; j++) {
+		
+			UtilityMap jUL = postset.get(j);
+			
+			// if J is smaller than I according to the total order on items, we skip it
+			if(jUL.item == iUL.item || compareItems(jUL.item, iUL.item) < 0) continue;
+
+			// EUCP
+			if (useEUCPstrategy && isPrunableByEUCS(iUL.item, jUL.item, level)) {
+				if (metrics != null) metrics.eucpPrune(level, ctx.depth);
+				continue;
+			}
+			
+			ctx.candidateCount++;
+			
+			if(hasAllTIDS(jUL, newgen_TIDs)) {
+				closedItems[itemCount++] = jUL.item;
+				closedsetNewTIDs = construct(closedsetNewTIDs, jUL, (frame != null) ? frame.closure(closedsetNewTIDs) : null);
+				if (metrics != null) {
+					metrics.containment(level, ctx.depth);
+					metrics.construct(level, ctx.depth, closedsetNewTIDs);
+				}
+				
+				if(!isPromising(closedsetNewTIDs)) {
+					isHUI = false;
+					break;
+				}
+			}
+			else newPost.add(jUL);
+		}
+		
+		int[] closedSetNew = Arrays.copyOf(closedItems, itemCount);	// kept by the output and the subtree event
+		if(isHUI) {
+			// L15: write out Closed_setNew and its support
+			if (minUtil <= closedsetNewTIDs.sumIutils)
+				output(ctx, closedSetNew, closedsetNewTIDs.sumIutils, closedsetNewTIDs.getSupport(), level);
+			
+			// L16: recursive call, the subtree pushes on the preset, see Preset
+			ctx.depth++;
+			genCHUI(ctx, false, closedSetNew, closedsetNewTIDs, preset, newPost, level);
+			ctx.depth--;
+		}
 
-	// join two utility-map. Complexity: O(|X|)
-	private UtilityMap construct(UtilityMap x, UtilityMap y) {
-		UtilityMap xy = new UtilityMap(y.item);			// create an empty utility list for pXY
+		if (event != null) {
+			event.end();
+			if (event.shouldCommit()) {
+				int[] names = newNamesToOldNamesPerLevel.get(level);
+				StringBuilder items = new StringBuilder();
+				for (int item : closedSetNew) items.append(names[item]).append(' ');
+				event.level = level + 1;
+				event.depth = ctx.depth;
+				event.itemset = items.toString().trim();
+				event.tidsetSize = (closedsetNewTIDs != null) ? closedsetNewTIDs.size : 0;
+				event.candidates = ctx.candidateCount - event.candidates;
+				event.patterns = ctx.patternCount - event.patterns;
+				event.commit();
+			}
+		}
+	}
+	
+	// mine all levels on a fork/join pool: levels and their top-level branches run as
+	// tasks, results are written level by level and branch by branch in sequential order
+	private void mineParallel(int maxLevel) throws IOException {
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			List<ForkJoinTask<SearchContext>> levels = new ArrayList<>();
+			if (mapStore == null)
+				for (int level = maxLevel-1; level >= 0; level--)
+					levels.add(pool.submit(new LevelTask(level)));
+			
+			for (int level = maxLevel-1; level >= 0; level--) {
+				if (mapStore != null) {							// stored: one level in memory at a time
+					pageIn(level);
+					levels.add(pool.submit(new LevelTask(level)));
+				}
+				SearchContext root = levels.get(maxLevel-1 - level).join();
+				flush(root);
+				if (root.branches != null)
+					for (BranchTask branch : root.branches)
+						flush(branch.join());
+				pageOut(level);
+			}
+		}
+		catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		finally {
+			pool.shutdownNow();						// tasks are left running only when the run was cancelled
+		}
+	}
+	
+	// memory-budgeted mode: when the base utility maps outgrow the budget, write every
+	// level to the spill file. Off-heap mode: move every level to direct buffers.
+	// Levels are then paged in one at a time to be mined.
+	private UtilityMapStore storeLevels() throws IOException {
+		long bytes = baseMapBytes;
+		if (!offHeapUtilityMaps && bytes <= utilityMapBudget) return null;
+		
+		PhaseEvent phase = PhaseEvent.start(offHeapUtilityMaps ? "off-heap" : "spill", 0);
+		System.out.println("- Moving " + bytes/1024/1024 + " MB of utility maps " + (offHeapUtilityMaps ? "off-heap..." : "to disk..."));
+		UtilityMapStore store = new UtilityMapStore(maxLevel, offHeapUtilityMaps);
+		for (int level = 0; level < maxLevel; level++)
+			store.store(level, EULPerLevel.get(level));
+		phase.finish(bytes);
+		return store;
+	}
+	
+	// bring back the base maps of a stored level before it is mined
+	private void pageIn(int level) throws IOException {
+		if (mapStore == null) return;
+		EUList eul = EULPerLevel.get(level);
+		mapStore.load(level, eul);
+		for (int j = 0; j < eul.size(); j++) {
+			if (fixedPoint && dictionaryUtilities) eul.get(j).encodeIutils();	// stored decoded
+			if (useBitmapTidsets) eul.get(j).tidset();
+		}
+	}
+	
+	// free the level once it is mined, together with its off-heap EUCS
+	private void pageOut(int level) {
+		if (mapStore == null) return;
+		mapStore.free(level, EULPerLevel.get(level));
+		if (useEUCPstrategy) EUCSPerLevel.get(level).free();
+	}
+	
+	// fixed-point mode: turn the base maps into int columns, and encode their iutils
+	// when asked. Nothing changes unless every map fits, see UtilityMap.fitsFixed.
+	private boolean compactUtilities() {
+		for (EUList eul : EULPerLevel)
+			for (int j = 0; j < eul.size(); j++)
+				if (!eul.get(j).fitsFixed()) {
+					System.out.println("- Utilities are not integral or too large, kept as double");
+					return false;
+				}
+		for (EUList eul : EULPerLevel)
+			for (int j = 0; j < eul.size(); j++) {
+				UtilityMap ul = eul.get(j);
+				ul.toFixed();
+				if (dictionaryUtilities) ul.encodeIutils();
+			}
+		return true;
+	}
+	
+	// heap bytes allocated so far by the current thread, -1 if the JVM does not tell
+	private static long allocatedBytes() {
+		java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (!(threads instanceof com.sun.management.ThreadMXBean)) return -1;
+		return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+	
+	// collect the counters of a finished task and write its patterns
+	private void flush(SearchContext ctx) throws IOException {
+		patternCount += ctx.patternCount;
+		candidateCount += ctx.candidateCount;
+		thresholdCounts = SearchContext.addCounts(thresholdCounts, ctx.thresholdCounts);
+		if (ctx.patterns != null)
+			for (Pattern p : ctx.patterns)
+				outputToFile(p.itemset, p.utility, p.support, p.level);
+	}
+	
+	// task running the top frame of a level, its branches are forked by genCHUI
+	class LevelTask extends RecursiveTask<SearchContext> {
+		private static final long serialVersionUID = 1L;
+		final int level;
+		
+		LevelTask(int level) {
+			this.level = level;
+		}
+		
+		protected SearchContext compute() {
+			SearchContext ctx = new SearchContext(0, writer != null || sink != null);
+			PhaseEvent phase = PhaseEvent.start("mining", level + 1);	// the top frame, forked branches run on
+			try {
+				genCHUI(ctx, true, new int[0], null, new Preset(), EULPerLevel.get(level), level);
+				phase.finish(ctx.patternCount);
+			}
+			catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return ctx;
+		}
+	}
+	
+	// task mining one branch of the search tree
+	class BranchTask extends RecursiveTask<SearchContext> {
+		private static final long serialVersionUID = 1L;
+		final int[] closedSet;
+		final UtilityMap newgen, iUL;
+		final Preset preset;
+		final EUList postset;
+		final int level, depth;
+		
+		BranchTask(int[] closedSet, UtilityMap newgen, UtilityMap iUL, Preset preset, EUList postset, int level, int depth) {
+			this.closedSet = closedSet;
+			this.newgen = newgen;
+			this.iUL = iUL;
+			this.preset = preset;
+			this.postset = postset;
+			this.level = level;
+			this.depth = depth;
+		}
+		
+		protected SearchContext compute() {
+			SearchContext ctx = new SearchContext(depth, writer != null || sink != null);
+			try {
+				genBranch(ctx, closedSet, newgen, iUL, preset, postset, level);
+			}
+			catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return ctx;
+		}
+	}
+	
+	// join two utility-maps by merging their sorted tidsets. Complexity: O(|X| + |Y|)
+	UtilityMap construct(UtilityMap x, UtilityMap y) {
+		return construct(x, y, null);
+	}
+	
+	// the same join, written into 'xy' when given: an arena map, emptied first
+	UtilityMap construct(UtilityMap x, UtilityMap y, UtilityMap xy) {
+		if (x.isFixed()) return constructFixed(x, y, xy);
+		int xsize = x.size, ysize = y.size;
+		if (xy == null)
+			xy = new UtilityMap(y.item, Math.min(xsize, ysize));	// create an empty utility list for pXY
+		else
+			xy.reset(y.item, Math.min(xsize, ysize));
 		double tu = x.sumIutils + x.sumRutils;
-		int isize = x.getSupport();
-		List<Element> el = new ArrayList<>(x.mapElements.values());
-		
-		for (int i = 0; i < isize; i++) {			// O(|X|)
-			Element ex = el.get(i);
-			Element ey = elementByTID(y, ex.tid);	// find element ey in py with tid = ex.tid - O(1)
-			if(ey == null){
-				tu -= (ex.iutils + ex.rutils);		// LA-Prune
-				if(tu < minUtil) return null;						
+		double min = minUtil;						// read once, the loop needs no fresh value
+		int[] xt = x.tids, yt = y.tids;
+		double[] xi = x.iutils, xr = x.rutils, yi = y.iutils;
+		int[] xw = x.weights;
+		
+		int j = 0;
+		for (int i = 0; i < xsize; i++) {			// O(|X|)
+			int tid = xt[i];
+			while (j < ysize && yt[j] < tid) j++;	// find element ey in py with tid = ex.tid
+			if (j == ysize || yt[j] != tid) {
+				tu -= (xi[i] + xr[i]);				// LA-Prune
+				if(tu < min) return null;
 				continue;
 			}
-			Element e = new Element(ex.tid, ex.iutils + ey.iutils, ex.rutils - ey.iutils);
-			xy.addElement(e);
+			xy.addElement(tid, xi[i] + yi[j], xr[i] - yi[j], xw[i]);
+			j++;
 		}
 		return xy;
 	}
+	
+	// the join for maps of the fixed-point layout: int columns, base maps may be dictionary-encoded.
+	// No overflow: an iutil + rutil never exceeds that of the element of x it comes from.
+	private UtilityMap constructFixed(UtilityMap x, UtilityMap y, UtilityMap xy) {
+		int xsize = x.size, ysize = y.size;
+		if (xy == null)
+			xy = UtilityMap.fixed(y.item, Math.min(xsize, ysize));
+		else
+			xy.resetFixed(y.item, Math.min(xsize, ysize));
+		long tu = (long) (x.sumIutils + x.sumRutils);		// exact, see UtilityMap.fitsFixed
+		double min = minUtil;
+		int[] xt = x.tids, yt = y.tids;
+		int[] xi = x.fixedIutils, xr = x.fixedRutils, yi = y.fixedIutils, xd = x.dictionary, yd = y.dictionary;
+		char[] xc = x.iutilCodes, yc = y.iutilCodes;
+		int[] xw = x.weights;
 		
-	// Y = X \cup {i}
-	private int[] appendItem(int[] itemset, int item) {
-		int [] newgen = new int[itemset.length+1];
-		System.arraycopy(itemset, 0, newgen, 0, itemset.length);
-		newgen[itemset.length] = item;
-		return newgen;
+		int j = 0;
+		for (int i = 0; i < xsize; i++) {
+			int tid = xt[i];
+			while (j < ysize && yt[j] < tid) j++;
+			int xu = (xc != null) ? xd[xc[i]] : xi[i];
+			if (j == ysize || yt[j] != tid) {
+				tu -= xu + xr[i];					// LA-Prune
+				if(tu < min) return null;
+				continue;
+			}
+			int yu = (yc != null) ? yd[yc[j]] : yi[j];
+			xy.addFixed(tid, xu + yu, xr[i] - yu, xw[i]);
+			j++;
+		}
+		return xy;
 	}
-
+		
 	// check for if newtid is subsumed by parent: TidSet(newtid) \subseteq TidSet(parent)
 	private boolean isSubsumed(UtilityMap newtid, UtilityMap parent) {
-		for (Integer i : newtid.mapElements.keySet()) {	 // if newtid.keySet() \subseteq parent.keySet() ?
-			if (!parent.hasTID(i))		// O(1)
-				return false;
-		}
-		return true;
+		if (useBitmapTidsets)
+			return parent.tidset().containsAll(newtid.tidset());
+		return parent.containsAllTIDs(newtid);	// O(|newtid| + |parent|)
 	}
 	
-	private boolean isDuplicate(UtilityMap tidset, EUList prevset) {
+	// L25-L26: true if the tidset is subsumed by a map of the preset. Maps are skipped on
+	// their support, tid range and signature, see Preset, only the others are tested
+	boolean isDuplicate(UtilityMap tidset, Preset preset) {
 		int tidsupp = tidset.getSupport();
-		if (prevset.getMaxSupport() < tidsupp) return false;
-		int size = prevset.size();
-		for (int i = 0; i < size; i++) {		// L25: for each utility list in prevset
-			UtilityMap ul = prevset.get(i);
-			if (ul.getSupport() < tidsupp) continue;	
-			if (isSubsumed(tidset, ul)) return true;
+		int first = (tidset.size > 0) ? tidset.tids[0] : Integer.MAX_VALUE;
+		int last = (tidset.size > 0) ? tidset.tids[tidset.size - 1] : Integer.MIN_VALUE;
+		long signature = tidset.signature();
+		int[] supports = preset.supports, firsts = preset.firsts, lasts = preset.lasts;
+		long[] signatures = preset.signatures;
+		for (int k = preset.size - 1; k >= 0; k--) {		// L25: for each utility map in preset, the newest first
+			if (preset.maxSupports[k] < tidsupp || preset.minFirsts[k] > first || preset.maxLasts[k] < last
+					|| (signature & ~preset.allSignatures[k]) != 0) return false;	// none of the maps left holds it
+			if (supports[k] < tidsupp || firsts[k] > first || lasts[k] < last || (signature & ~signatures[k]) != 0) continue;
+			if (isSubsumed(tidset, preset.maps[k])) return true;
 		}
-		return false; // not subsumed, complexity: O(|prevset|x|tidset|)		
+		return false; // not subsumed
+	}
+
+	// true if a tidset holds a tid of the batch being mined, always true outside incremental mining
+	boolean holdsDeltaTid(UtilityMap ul) {
+		return ul.size > 0 && ul.tids[ul.size - 1] >= firstDeltaTid;
 	}
 
 	// test if an item is promising using the utility map
@@ -418,54 +1012,61 @@ public class AlgoMLCMiner {
 	}
 
 	// test if y \subseteq x
-	private boolean hasAllTIDS(UtilityMap x, UtilityMap y) {
-		int ysize = y.getSupport();
-		if (x.getSupport() < ysize) return false;
-		Set<Integer> tids = y.mapElements.keySet();
-		for (Integer i : tids) 
-			if (!x.hasTID(i)) return false;			
-		return true; // Complexity: O(|y|)		
+	boolean hasAllTIDS(UtilityMap x, UtilityMap y) {
+		if (useBitmapTidsets)
+			return x.tidset().containsAll(y.tidset());	// word-parallel on dense containers
+		return x.containsAllTIDs(y);			// Complexity: O(|x| + |y|)
 	}	
 	
 	// EUCP
-	private boolean isPrunableByEUCS(int x, int y, int level) {
+	boolean isPrunableByEUCS(int x, int y, int level) {
 		if (!useEUCPstrategy)
 			return false;
 		
-		Map<Integer, Double> mapTWUF = EUCSPerLevel.get(level).get(x);
-		if(mapTWUF != null) {
-			Double twuF = mapTWUF.get(y);
-			if(twuF == null || twuF < minUtil)
+		EUCS eucs = EUCSPerLevel.get(level);
+		if (eucs.hasRow(x)) {
+			double twuF = eucs.get(x, y);		// 0 if x and y never co-occur
+			if(twuF == 0 || twuF < minUtil)
 				return true;
 		}
 
 		return false;
 	}
 	
-	private void output(int[] itemset, double sumIutils, int support, int level) throws IOException {
-		patternCount++; // increase the number of MLCHUIs found
-		outputToFile(itemset, sumIutils, support, level);
+	private void output(SearchContext ctx, int[] itemset, double sumIutils, int support, int level) throws IOException {
+		if (topK > 0) {
+			offerTopK(new Pattern(itemset, sumIutils, support, level));
+			return;
+		}
+		ctx.patternCount++; // increase the number of MLCHUIs found
+		if (thresholds != null) {
+			if (ctx.thresholdCounts == null) ctx.thresholdCounts = new int[thresholds.length];
+			ctx.thresholdCounts[thresholdIndex(sumIutils)]++;
+		}
+		if (ctx.patterns != null)
+			ctx.patterns.add(new Pattern(itemset, sumIutils, support, level));
+		else
+			outputToFile(itemset, sumIutils, support, level);
 	}
 	
-	private void outputToFile(int[] itemset, double sumIutils, int support, int level) throws IOException {
-
+	void outputToFile(int[] itemset, double sumIutils, int support, int level) throws IOException {
+		if (sink != null) {										// published under the original item names
+			int[] names = newNamesToOldNamesPerLevel.get(level);
+			int[] items = new int[itemset.length];
+			for (int i = 0; i < items.length; i++) items[i] = names[itemset[i]];
+			sink.accept(new Pattern(items, sumIutils, support, level));
+			return;
+		}
 		if (writer == null) return;
-		
-		StringBuilder buffer = new StringBuilder();
+		double threshold = (thresholds != null) ? thresholds[thresholdIndex(sumIutils)] : Double.NaN;
+		writer.write(itemset, newNamesToOldNamesPerLevel.get(level), support, sumIutils, threshold);	// encoded and written by the writer thread
+	}
 
-		// append the prefix
-		for (int i = 0; i < itemset.length; i++) {
-			buffer.append(newNamesToOldNamesPerLevel.get(level)[itemset[i]]);
-			buffer.append(' ');
-		}
-		buffer.append(" #SUP: ");
-		buffer.append(support);			
-		buffer.append(" #UTIL: ");
-		buffer.append(sumIutils);	
-		
-		// write to file
-		writer.write(buffer.toString());
-		writer.newLine();
+	// position of the highest sweep threshold met by a utility
+	private int thresholdIndex(double utility) {
+		int k = thresholds.length - 1;
+		while (k > 0 && thresholds[k] > utility) k--;
+		return k;
 	}
 
     private double peakHeapUsage() {
@@ -493,11 +1094,41 @@ public class AlgoMLCMiner {
 
 		System.out.println("=============  MLC-MINER_LDB STATISTICS =============");
 		System.out.println(" EUCP enabled      : " + (useEUCPstrategy ? "YES": "NO"));
-		System.out.println(" Given minutil     : " + minUtil);
+		if (useEUCPstrategy && EUCSPerLevel != null) {
+			long eucsBytes = 0;
+			for (EUCS eucs : EUCSPerLevel) eucsBytes += eucs.sizeInBytes();
+			System.out.println(" EUCS memory       : " + eucsBytes/1024.0/1024.0 + " MB");
+		}
+		System.out.println(" Worker threads    : " + (parallelism > 1 ? parallelism : 1));
+		System.out.println(" Bitmap tidsets    : " + (useBitmapTidsets ? "YES": "NO"));
+		System.out.println(" Merged trans.     : " + (mergeTransactions ? mergedCount : "NO"));
+		System.out.println(" Base utility maps : " + baseMapBytes/1024.0/1024.0 + " MB ("
+				+ (!fixedPoint ? "double" : dictionaryUtilities ? "fixed-point, dictionary" : "fixed-point") + ")");
+		if (mapStore != null)
+			System.out.println(" Stored maps       : " + mapStore.storedBytes/1024.0/1024.0 + " MB" + (offHeapUtilityMaps ? " off-heap" : " on disk"));
+		if (miningAllocatedBytes >= 0)
+			System.out.println(" Mining allocation : " + miningAllocatedBytes/1024.0/1024.0 + " MB ("
+					+ (reuseBuffers ? "arena" : "no arena") + ", " + (long) (miningAllocatedBytes/1024.0/1024.0*1e9/Math.max(miningNanos, 1)) + " MB/s)");
+		if (topK > 0)
+			System.out.println(" Top-k             : " + topK + " (final minutil " + minUtil + ")");
+		else
+			System.out.println(" Given minutil     : " + minUtil);
 		System.out.println(" Approx. runtime   : " + algoRuntime + " ms ("+ algoRuntime/1000.0 +" s)");
 		System.out.println(" Peak memory used  : " + algoMemUsage  + " MB");
 		System.out.println(" Patterns found    : " + patternCount); 
+		if (thresholds != null && thresholdCounts != null) {
+			int meeting = 0;
+			for (int k = thresholds.length - 1; k >= 0; k--) {		// patterns meeting each threshold
+				meeting += thresholdCounts[k];
+				System.out.println("   at minutil " + thresholds[k] + " : " + meeting);
+			}
+		}
 		System.out.println(" Candidates count  : " + candidateCount);
+		if (metrics != null) {
+			System.out.println(" Search effort     :");
+			for (String row : metrics.getTable())
+				System.out.println("   " + row);
+		}
 		System.out.println("=====================================================");
 	}
 	
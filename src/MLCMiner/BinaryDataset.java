@@ -0,0 +1,212 @@
+package MLCMiner;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ObjIntConsumer;
+
+//	BinaryDataset
+//	-------------
+//	Compact pre-parsed form of an SPMF transaction file and its taxonomy, loaded
+//	through a memory-mapped buffer instead of being parsed again on every run.
+//
+//	Layout (little endian):
+//		int    magic 'MLCB', version
+//		int    transaction count, largest item (items and parents), parent array length
+//		long   item occurrence count
+//		int    taxonomy tuple count
+//		long   offsets[transactions + 1]		start of each transaction in the item columns
+//		int    items[occurrences]
+//		double utilities[occurrences]
+//		double transaction utilities[transactions]
+//		int    tuple children[tuples], tuple parents[tuples]	in file order
+//		int    parent[length]					resolved parent of each item, 0 = none
+//
+//	Usage: BinaryDataset <transactions.txt> <taxonomy.txt> <output.mlcb>
+//	The .mlcb file is then given as both the transaction and the taxonomy file.
+public class BinaryDataset {
+
+	static final int MAGIC = 0x4D4C4342;	// "MLCB"
+	static final int VERSION = 1;
+	static final int HEADER = 4 * 4 + 8 + 4 + 4;
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 3) {
+			System.out.println("Usage: BinaryDataset <transactions.txt> <taxonomy.txt> <output.mlcb>");
+			return;
+		}
+		long start = System.currentTimeMillis();
+		convert(args[0], args[1], args[2]);
+		System.out.println("- Converted into " + args[2] + " in " + (System.currentTimeMillis() - start) + " ms");
+	}
+
+	// true if the file starts with the binary dataset magic number
+	public static boolean isBinary(String path) throws IOException {
+		InputStream in = new FileInputStream(path);
+		try {
+			byte[] head = new byte[4];
+			if (in.read(head) < 4) return false;
+			return ByteBuffer.wrap(head).order(ByteOrder.LITTLE_ENDIAN).getInt() == MAGIC;
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	// convert an SPMF transaction file and its taxonomy into the binary format
+	public static void convert(String inputTransaction, String inputTaxonomy, String output) throws IOException {
+		Dataset dataset = new Dataset(inputTransaction, Integer.MAX_VALUE);
+		List<Transaction> transactions = dataset.getTransactions();
+
+		List<int[]> tuples = new ArrayList<int[]>();				// child, parent in file order
+		BufferedReader reader = new BufferedReader(new FileReader(inputTaxonomy));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.isEmpty() || line.charAt(0) == '#' || line.charAt(0) == '@') continue;
+				String tokens[] = line.split(",");
+				tuples.add(new int[] { Integer.parseInt(tokens[0].trim()), Integer.parseInt(tokens[1].trim()) });
+			}
+		}
+		finally {
+			reader.close();
+		}
+
+		int maxItem = dataset.getMaxItem();
+		for (int[] tuple : tuples) maxItem = Math.max(maxItem, Math.max(tuple[0], tuple[1]));
+		int[] parent = new int[maxItem + 1];
+		for (int[] tuple : tuples) parent[tuple[0]] = tuple[1];	// the last tuple of a child wins, as in Taxonomy
+
+		long occurrences = 0;
+		for (Transaction t : transactions) occurrences += t.items.length;
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output), 1 << 16));
+		try {
+			writeInt(out, MAGIC);
+			writeInt(out, VERSION);
+			writeInt(out, transactions.size());
+			writeInt(out, maxItem);
+			writeInt(out, parent.length);
+			writeLong(out, occurrences);
+			writeInt(out, tuples.size());
+
+			long offset = 0;
+			writeLong(out, offset);
+			for (Transaction t : transactions) writeLong(out, offset += t.items.length);
+			for (Transaction t : transactions) for (int item : t.items) writeInt(out, item);
+			for (Transaction t : transactions) for (double u : t.utilities) writeLong(out, Double.doubleToRawLongBits(u));
+			for (Transaction t : transactions) writeLong(out, Double.doubleToRawLongBits(t.transactionUtility));
+			for (int[] tuple : tuples) writeInt(out, tuple[0]);
+			for (int[] tuple : tuples) writeInt(out, tuple[1]);
+			for (int p : parent) writeInt(out, p);
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	private static void writeInt(DataOutputStream out, int v) throws IOException {
+		out.writeInt(Integer.reverseBytes(v));
+	}
+
+	private static void writeLong(DataOutputStream out, long v) throws IOException {
+		out.writeLong(Long.reverseBytes(v));
+	}
+
+	// ---------------------------------------------------------------------------
+	// reading
+	// ---------------------------------------------------------------------------
+
+	final int		transCount;
+	final int		maxItem;
+	final int		parentLength;
+	final long		occurrences;
+	final int		tupleCount;
+	final FileChannel channel;
+
+	private BinaryDataset(FileChannel channel) throws IOException {
+		this.channel = channel;
+		ByteBuffer header = map(0, HEADER);
+		if (header.getInt() != MAGIC) throw new IOException("Not a binary dataset");
+		int version = header.getInt();
+		if (version != VERSION) throw new IOException("Unsupported binary dataset version " + version);
+		transCount = header.getInt();
+		maxItem = header.getInt();
+		parentLength = header.getInt();
+		occurrences = header.getLong();
+		tupleCount = header.getInt();
+	}
+
+	private ByteBuffer map(long position, long size) throws IOException {
+		if (size > Integer.MAX_VALUE) throw new IOException("Binary dataset column too large to be mapped");
+		return channel.map(FileChannel.MapMode.READ_ONLY, position, size).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	private long offsetsPosition()		{ return HEADER; }
+	private long itemsPosition()		{ return offsetsPosition() + 8L * (transCount + 1); }
+	private long utilitiesPosition()	{ return itemsPosition() + 4L * occurrences; }
+	private long tuPosition()			{ return utilitiesPosition() + 8L * occurrences; }
+	private long tuplesPosition()		{ return tuPosition() + 8L * transCount; }
+	private long parentPosition()		{ return tuplesPosition() + 8L * tupleCount; }
+
+	// load at most 'maxTrans' transactions of a binary dataset
+	static List<Transaction> readTransactions(String path, int maxTrans) throws IOException {
+		List<Transaction> transactions = new ArrayList<Transaction>();
+		forEachTransaction(path, maxTrans, (t, tid) -> transactions.add(t));
+		return transactions;
+	}
+
+	// hand at most 'maxTrans' transactions of a binary dataset to 'consumer', one at a time
+	static void forEachTransaction(String path, int maxTrans, ObjIntConsumer<Transaction> consumer) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(path, "r");
+		try {
+			BinaryDataset bin = new BinaryDataset(file.getChannel());
+			int count = (maxTrans > 0) ? Math.min(bin.transCount, maxTrans) : bin.transCount;	// <= 0: no cap, as for the text file
+			long[] offsets = new long[count + 1];
+			bin.map(bin.offsetsPosition(), 8L * (count + 1)).asLongBuffer().get(offsets);
+
+			IntBuffer items = bin.map(bin.itemsPosition(), 4L * offsets[count]).asIntBuffer();
+			DoubleBuffer utilities = bin.map(bin.utilitiesPosition(), 8L * offsets[count]).asDoubleBuffer();
+			DoubleBuffer tu = bin.map(bin.tuPosition(), 8L * count).asDoubleBuffer();
+
+			for (int t = 0; t < count; t++) {
+				int length = (int) (offsets[t+1] - offsets[t]);
+				int[] transItems = new int[length];
+				double[] transUtilities = new double[length];
+				items.get(transItems);
+				utilities.get(transUtilities);
+				consumer.accept(new Transaction(transItems, transUtilities, tu.get()), t);
+			}
+		}
+		finally {
+			file.close();
+		}
+	}
+
+	// load the resolved parent array of a binary dataset, parent[item] = 0 when item has no parent
+	static int[] readParents(String path) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(path, "r");
+		try {
+			BinaryDataset bin = new BinaryDataset(file.getChannel());
+			int[] parent = new int[bin.parentLength];
+			bin.map(bin.parentPosition(), 4L * bin.parentLength).asIntBuffer().get(parent);
+			return parent;
+		}
+		finally {
+			file.close();
+		}
+	}
+}
@@ -5,6 +5,7 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.ObjIntConsumer;
 
 //This class represents a quantitative database
 public class Dataset {
@@ -13,12 +14,36 @@ public class Dataset {
 	private int maxItem = 0;
 	private long maxTransLength = 0;
 	private long sumTransLength = 0;
+	private int transactionCount = 0;
 	public long sumUtility = 0;
 
+	// empty dataset, filled by stream()
+	public Dataset() {
+		transactions = new ArrayList<Transaction>();
+	}
+
 	// main constructor
     public Dataset(String datasetPath, int maximumTransactionCount) throws IOException {
 
+        if (BinaryDataset.isBinary(datasetPath)) {						// pre-parsed dataset, see BinaryDataset
+        	transactions = BinaryDataset.readTransactions(datasetPath, maximumTransactionCount);
+        	computeStatistics();
+        	return;
+        }
         transactions = new ArrayList<Transaction>();
+        stream(datasetPath, maximumTransactionCount, (t, tid) -> transactions.add(t));
+    }
+
+    // read the transactions one at a time and hand them to 'consumer' with their tid,
+    // without keeping them. The statistics of this dataset are updated on the way.
+    public void stream(String datasetPath, int maximumTransactionCount, ObjIntConsumer<Transaction> consumer) throws IOException {
+        if (BinaryDataset.isBinary(datasetPath)) {
+        	BinaryDataset.forEachTransaction(datasetPath, maximumTransactionCount, (t, tid) -> {
+        		account(t);
+        		consumer.accept(t, tid);
+        	});
+        	return;
+        }
         BufferedReader br = new BufferedReader(new FileReader(datasetPath));
         String line;
         int i = 0;
@@ -27,13 +52,28 @@ public class Dataset {
 			if (line.isEmpty() == true ||
 				line.charAt(0) == '#' ||  
 				line.charAt(0) == '@') continue;
+			consumer.accept(createTransaction(line), i);
 			i++;
-			transactions.add(createTransaction(line));
 	    	if(i == maximumTransactionCount) break;
         }
         br.close();
     }
 
+    // load the dataset with the memory-mapped parser, using 'threads' workers
+    public Dataset(String datasetPath, int maximumTransactionCount, int threads) throws IOException {
+        if (BinaryDataset.isBinary(datasetPath))
+        	transactions = BinaryDataset.readTransactions(datasetPath, maximumTransactionCount);
+        else
+        	transactions = new MappedDatasetReader("#@").read(datasetPath, maximumTransactionCount, threads);
+        computeStatistics();
+    }
+
+    // statistics of transactions that were not read through createTransaction
+    private void computeStatistics() {
+        for (Transaction t : transactions)
+        	account(t);
+    }
+
     // create a transaction object from a string read from the input file
     private Transaction createTransaction(String line) {
     	
@@ -47,14 +87,21 @@ public class Dataset {
         for (int i = 0; i < items.length; i++) {						// for each item        	
         	items[i] = Integer.parseInt(itemsString[i]);				// store that item        	
         	utilities[i] = Double.parseDouble(itemsUtilitiesString[i]);	// and its utility in that transaction
-            if(items[i] > maxItem) maxItem = items[i];					// determine the largest item name
         }
 
-        if (maxTransLength < items.length)	maxTransLength = items.length;
-        sumTransLength += items.length;
-        sumUtility += transactionUtility;
-        
-        return new Transaction(items, utilities, transactionUtility);	// create the transaction 
+        Transaction transaction = new Transaction(items, utilities, transactionUtility);	// create the transaction
+        account(transaction);
+        return transaction;
+    }
+
+    // add a transaction to the statistics
+    private void account(Transaction t) {
+    	for (int item : t.items)
+    		if (item > maxItem) maxItem = item;						// determine the largest item name
+    	if (maxTransLength < t.items.length) maxTransLength = t.items.length;
+    	sumTransLength += t.items.length;
+    	sumUtility += t.transactionUtility;
+    	transactionCount++;
     }
 
     // returns the list of all transactions
@@ -62,6 +109,11 @@ public class Dataset {
         return transactions;
     }
 
+    // returns the number of transactions read
+    public int getTransactionCount() {
+        return transactionCount;
+    }
+
     // returns the largest item within the database
     public int getMaxItem() {
         return maxItem;
@@ -78,6 +130,6 @@ public class Dataset {
 
     // returns the average transaction length
     public double getAvgTransLength() {
-    	return (double) sumTransLength / transactions.size(); 
+    	return (double) sumTransLength / transactionCount; 
     }
 }
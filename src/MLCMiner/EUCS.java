@@ -0,0 +1,214 @@
+package MLCMiner;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
+//	EUCS
+//	----
+//	Estimated Utility Co-occurrence Structure of one taxonomy level: the TWU of every
+//	pair (x, y), x < y, of the renamed items of that level. Items are renamed densely
+//	(1..n) per level, so the pairs are kept in a flat upper-triangular double[] matrix.
+//	When the matrix would exceed the given budget, every row falls back to a small
+//	open-addressing int -> double map holding only the pairs that co-occur.
+//	Off-heap, the dense matrix lives in a direct buffer, released by free() once the
+//	level is mined.
+public class EUCS {
+
+	int					itemCount;	// n, items are named 1..n
+	double[]			matrix;		// upper triangle, row-major, null when sparse or off-heap
+	DoubleBuffer		cells;		// the same triangle off-heap, null otherwise
+	ByteBuffer			direct;		// the direct buffer under 'cells'
+	long				freedBytes = 0;	// size of the off-heap matrix once freed
+	SparseRow[]			rows;		// sparse fallback, null when dense
+	boolean[]			rowUsed;	// true once item x was followed by another item in a transaction
+	final long			maxMatrixBytes;
+	final boolean		offHeap;
+
+	// create the EUCS of a level holding 'itemCount' items, dense if it fits in 'maxMatrixBytes'
+	public EUCS(int itemCount, long maxMatrixBytes) {
+		this(itemCount, maxMatrixBytes, false);
+	}
+
+	// same, with the dense matrix in direct memory when 'offHeap' is set
+	public EUCS(int itemCount, long maxMatrixBytes, boolean offHeap) {
+		this.itemCount = itemCount;
+		this.maxMatrixBytes = maxMatrixBytes;
+		this.offHeap = offHeap;
+		long count = (long) itemCount * (itemCount - 1) / 2;
+		rowUsed = new boolean[itemCount + 1];
+		if (count * 8 <= maxMatrixBytes && count * 8 < Integer.MAX_VALUE && offHeap) {
+			direct = ByteBuffer.allocateDirect((int) Math.max(count, 0) * 8);	// zero-filled
+			cells = direct.order(ByteOrder.nativeOrder()).asDoubleBuffer();
+			rows = null;
+		}
+		else if (count * 8 <= maxMatrixBytes && count < Integer.MAX_VALUE) {
+			matrix = new double[(int) Math.max(count, 0)];
+			rows = null;
+		}
+		else {
+			matrix = null;
+			rows = new SparseRow[itemCount + 1];
+		}
+	}
+
+	// make room for items named up to 'count', keeping the pairs already added.
+	// The matrix is relaid out, or turned into sparse rows once it exceeds the budget.
+	// It grows by half at least, so that naming items one at a time stays cheap.
+	public void grow(int count) {
+		if (count <= itemCount) return;
+		count = Math.max(count, itemCount + (itemCount >> 1));
+		if (matrix == null && cells == null) {				// sparse rows are indexed by name only
+			rows = Arrays.copyOf(rows, count + 1);
+			rowUsed = Arrays.copyOf(rowUsed, count + 1);
+			itemCount = count;
+			return;
+		}
+		EUCS larger = new EUCS(count, maxMatrixBytes, offHeap);
+		for (int x = 1; x < itemCount; x++) {
+			if (!rowUsed[x]) continue;
+			for (int y = x + 1; y <= itemCount; y++) {
+				double tu = get(x, y);
+				if (tu != 0) larger.add(x, y, tu);
+			}
+			larger.rowUsed[x] = true;
+		}
+		free();
+		itemCount = larger.itemCount;
+		matrix = larger.matrix;
+		cells = larger.cells;
+		direct = larger.direct;
+		rows = larger.rows;
+		rowUsed = larger.rowUsed;
+	}
+
+	// true if the pairs are stored in the triangular matrix
+	public boolean isDense() {
+		return matrix != null || cells != null;
+	}
+
+	// release the off-heap matrix, the structure must not be used afterwards
+	public void free() {
+		if (direct == null) return;
+		freedBytes = direct.capacity();
+		cells = null;
+		UtilityMapStore.freeDirect(direct);
+		direct = null;
+	}
+
+	// position of the pair (x, y), 1 <= x < y <= n, in the triangular matrix
+	private int index(int x, int y) {
+		long a = x - 1;
+		return (int) (a * (2L * itemCount - a - 1) / 2 + (y - x - 1));
+	}
+
+	// add the utility of a transaction containing both x and y, x < y
+	public void add(int x, int y, double tu) {
+		rowUsed[x] = true;
+		if (matrix != null)
+			matrix[index(x, y)] += tu;
+		else if (cells != null) {
+			int i = index(x, y);
+			cells.put(i, cells.get(i) + tu);
+		}
+		else {
+			SparseRow row = rows[x];
+			if (row == null) rows[x] = row = new SparseRow();
+			row.add(y, tu);
+		}
+	}
+
+	// TWU of the pair (x, y), x < y, or 0 if they never co-occur
+	public double get(int x, int y) {
+		if (matrix != null)
+			return matrix[index(x, y)];
+		if (cells != null)
+			return cells.get(index(x, y));
+		SparseRow row = rows[x];
+		return (row == null) ? 0 : row.get(y);
+	}
+
+	// add the pairs of another EUCS of the same items, a partial one of a parallel scan
+	public void addAll(EUCS other) {
+		for (int x = 1; x < other.rowUsed.length && x <= itemCount; x++) {
+			if (!other.rowUsed[x]) continue;
+			if (other.matrix != null || other.cells != null) {
+				for (int y = x + 1; y <= other.itemCount; y++) {
+					double tu = other.get(x, y);
+					if (tu != 0) add(x, y, tu);
+				}
+			}
+			else if (other.rows[x] != null) {
+				SparseRow row = other.rows[x];
+				for (int k = 0; k < row.keys.length; k++)
+					if (row.keys[k] != 0) add(x, row.keys[k], row.values[k]);
+			}
+			rowUsed[x] = true;
+		}
+	}
+
+	// true if x was followed by at least one item in some transaction
+	public boolean hasRow(int x) {
+		return rowUsed[x];
+	}
+
+	// approximate memory used by this structure, in bytes
+	public long sizeInBytes() {
+		long bytes = rowUsed.length;
+		if (matrix != null)
+			return bytes + 8L * matrix.length;
+		if (offHeap && rows == null)
+			return bytes + (cells != null ? 8L * cells.capacity() : freedBytes);
+		for (SparseRow row : rows)
+			if (row != null) bytes += 12L * row.keys.length;
+		return bytes;
+	}
+
+	// open-addressing map from an item name (> 0) to a TWU value, 0 marks an empty slot
+	static final class SparseRow {
+		int[]		keys = new int[8];
+		double[]	values = new double[8];
+		int			size = 0;
+
+		void add(int key, double value) {
+			int mask = keys.length - 1;
+			int slot = (key * 0x9E3779B9) >>> 1 & mask;
+			while (keys[slot] != 0 && keys[slot] != key)
+				slot = (slot + 1) & mask;
+			if (keys[slot] == 0) {
+				keys[slot] = key;
+				if (++size * 2 > keys.length) {
+					values[slot] = value;
+					grow();
+					return;
+				}
+			}
+			values[slot] += value;
+		}
+
+		double get(int key) {
+			int mask = keys.length - 1;
+			int slot = (key * 0x9E3779B9) >>> 1 & mask;
+			while (keys[slot] != 0) {
+				if (keys[slot] == key) return values[slot];
+				slot = (slot + 1) & mask;
+			}
+			return 0;
+		}
+
+		private void grow() {
+			int[] oldKeys = keys;
+			double[] oldValues = values;
+			keys = new int[oldKeys.length << 1];
+			values = new double[oldKeys.length << 1];
+			size = 0;
+			for (int i = 0; i < oldKeys.length; i++)
+				if (oldKeys[i] != 0) add(oldKeys[i], oldValues[i]);
+		}
+	}
+
+	public String toString() {
+		return "EUCS [" + itemCount + " items, " + (isDense() ? "dense" : "sparse") + ", " + sizeInBytes() + " bytes]";
+	}
+}
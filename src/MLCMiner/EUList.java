@@ -27,6 +27,12 @@ public class EUList {
 		list.add(ul);		
 	}
 	
+	// empty the list, to reuse it
+	public void clear() {
+		list.clear();
+		maxSupport = 0;
+	}
+	
 	public int getMaxSupport() {
 		return maxSupport;
 	}
@@ -6,7 +6,7 @@ public class Element {
 	public final double iutils;	/** itemset utility */   
 	public double rutils;		/** remaining utility */ 
 	
-	public Element(int tid, Double iutils, Double rutils) {
+	public Element(int tid, double iutils, double rutils) {
 		this.tid = tid;
 		this.iutils = iutils;
 		this.rutils = rutils;
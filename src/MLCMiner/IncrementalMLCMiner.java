@@ -0,0 +1,162 @@
+package MLCMiner;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//	IncrementalMLCMiner
+//	-------------------
+//	MLC-Miner over a growing transaction log. The utility maps and EUCS of every item
+//	are kept between batches (no item is dropped on its GWU, which may still rise) and
+//	the transactions of a new batch are appended to them under the next tids.
+//	A closed pattern whose tidset holds no new tid keeps its utility, its support and
+//	its closure, while every pattern holding a new tid lies in a branch whose tidset
+//	holds one too. So only those branches are mined again, and the patterns they give
+//	replace the previous ones. The result is the same as mining the whole log at once,
+//	with a cost that follows the batch rather than the history.
+//	Mining is sequential, the parallelism setting is not used.
+public class IncrementalMLCMiner extends AlgoMLCMiner {
+
+	List<Map<ItemsKey, Pattern>> patternsPerLevel;		// current patterns, keyed by their sorted items
+
+	public IncrementalMLCMiner(boolean useEUCP) {
+		super(useEUCP);
+	}
+
+	// load and mine the history, then keep everything for the following batches
+	@Override
+	public void runAlgorithm(String inputTransaction, String inputTaxonomy, String output, double minUtility, int maxTrans) throws IOException {
+		minUtil = minUtility;
+		keepScanState = true;
+		timerStart = System.currentTimeMillis();
+
+		buildUtilityMaps(inputTransaction, inputTaxonomy, maxTrans);
+		patternsPerLevel = new ArrayList<Map<ItemsKey, Pattern>>();
+		firstDeltaTid = 0;
+		mine(output);
+	}
+
+	// append a batch file, in the format of the history, and update the patterns
+	public void addBatch(String inputTransaction, String output) throws IOException {
+		addBatch(new Dataset(inputTransaction, Integer.MAX_VALUE).getTransactions(), output);
+	}
+
+	// append a batch of transactions and update the patterns
+	public void addBatch(List<Transaction> batch, String output) throws IOException {
+		if (patternsPerLevel == null)
+			throw new IllegalStateException("runAlgorithm must load the history first");
+		timerStart = System.currentTimeMillis();
+		firstDeltaTid = transCount;
+
+		System.out.println("- Adding " + batch.size() + " transaction(s)...");
+		for (Transaction t : batch)
+			scanTransactionFirstTime(t);
+		nameNewItems();
+
+		if (mergeTransactions) {								// merge within the batch only, old tids must not change
+			mergeMapPerLevel = new ArrayList<Map<ItemsKey, Integer>>();
+			for (int i = 0; i < maxLevel; i++)
+				mergeMapPerLevel.add(new HashMap<ItemsKey, Integer>());
+		}
+		for (int i = 0; i < batch.size(); i++)
+			addTransaction(batch.get(i), firstDeltaTid + i);
+		mergeMapPerLevel = null;
+		transCount += batch.size();
+
+		for (EUList eul : EULPerLevel)
+			for (int j = 0; j < eul.size(); j++) {
+				UtilityMap ul = eul.get(j);
+				ul.bitmap = null;								// the appended tids are not in the cached bitmap
+				if (useBitmapTidsets) ul.tidset();
+			}
+		mine(output);
+	}
+
+	// give the items first seen in a batch the next names of their levels
+	void nameNewItems() {
+		while (EULPerLevel.size() < maxLevel) {					// a new item below the deepest level so far
+			EULPerLevel.add(new EUList());
+			if (useEUCPstrategy) EUCSPerLevel.add(new EUCS(0, maxEUCSMatrixBytes));
+			oldNameToNewNamesPerLevel.add(new int[GWUs.length]);
+			newNamesToOldNamesPerLevel.add(new int[GWUs.length]);
+		}
+		if (itemsCountPerLevel.length < maxLevel)
+			itemsCountPerLevel = Arrays.copyOf(itemsCountPerLevel, maxLevel);
+
+		for (int i = 0; i < maxLevel; i++) {					// the name arrays cover every item seen
+			if (oldNameToNewNamesPerLevel.get(i).length < GWUs.length)
+				oldNameToNewNamesPerLevel.set(i, Arrays.copyOf(oldNameToNewNamesPerLevel.get(i), GWUs.length));
+			if (newNamesToOldNamesPerLevel.get(i).length < GWUs.length)
+				newNamesToOldNamesPerLevel.set(i, Arrays.copyOf(newNamesToOldNamesPerLevel.get(i), GWUs.length));
+		}
+
+		for (int item = 1; item < GWUs.length; item++) {
+			Integer level = mapItemToLevel.get(item);
+			if (level == null || oldNameToNewNamesPerLevel.get(level - 1)[item] != 0) continue;
+			int name = ++itemsCountPerLevel[level - 1];
+			oldNameToNewNamesPerLevel.get(level - 1)[item] = name;
+			newNamesToOldNamesPerLevel.get(level - 1)[name] = item;
+			EULPerLevel.get(level - 1).add(new UtilityMap(name));
+		}
+		if (useEUCPstrategy)
+			for (int i = 0; i < maxLevel; i++) EUCSPerLevel.get(i).grow(itemsCountPerLevel[i]);
+	}
+
+	// mine the branches holding a tid >= firstDeltaTid, update the patterns and write them all
+	void mine(String output) throws IOException {
+		System.out.println("- MLCHUI mining from tid " + firstDeltaTid + "...");
+		parallelism = 1;
+		writer = null;
+		SearchContext ctx = new SearchContext(0, true);			// buffered: the patterns are collected
+		for (int level = maxLevel - 1; level >= 0; level--)
+			genCHUI(ctx, true, new int[0], null, new Preset(), EULPerLevel.get(level), level);
+
+		while (patternsPerLevel.size() < maxLevel)
+			patternsPerLevel.add(new HashMap<ItemsKey, Pattern>());
+		for (Pattern p : ctx.patterns) {						// a pattern found again replaces its old values
+			int[] items = p.itemset.clone();
+			Arrays.sort(items);
+			patternsPerLevel.get(p.level).put(new ItemsKey(items, items.length), p);
+		}
+		candidateCount = ctx.candidateCount;
+		patternCount = 0;
+		for (Map<ItemsKey, Pattern> patterns : patternsPerLevel)
+			patternCount += patterns.size();
+
+		writePatterns(output);
+		timerStop = System.currentTimeMillis();
+		System.out.println("- Done.");
+	}
+
+	// write the current patterns, levels in mining order and items in name order
+	void writePatterns(String output) throws IOException {
+		if (output != null) {
+			writer = new PatternWriter(output);
+			for (int level = maxLevel - 1; level >= 0; level--) {
+				List<ItemsKey> keys = new ArrayList<ItemsKey>(patternsPerLevel.get(level).keySet());
+				keys.sort((a, b) -> {
+					for (int i = 0; i < Math.min(a.items.length, b.items.length); i++)
+						if (a.items[i] != b.items[i]) return a.items[i] - b.items[i];
+					return a.items.length - b.items.length;
+				});
+				for (ItemsKey key : keys) {
+					Pattern p = patternsPerLevel.get(level).get(key);
+					outputToFile(p.itemset, p.utility, p.support, p.level);
+				}
+			}
+			writer.close();
+			writer = null;
+		}
+	}
+
+	// the current patterns of every level
+	public List<Pattern> getPatterns() {
+		List<Pattern> patterns = new ArrayList<Pattern>();
+		for (Map<ItemsKey, Pattern> level : patternsPerLevel)
+			patterns.addAll(level.values());
+		return patterns;
+	}
+}
@@ -0,0 +1,106 @@
+package MLCMiner;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+//	KernelBenchmark
+//	---------------
+//	Micro-benchmarks of the mining kernels of AlgoMLCMiner: construct, hasAllTIDS,
+//	isDuplicate and isPrunableByEUCS. They run on the utility-maps of a real dataset,
+//	using random pairs of base lists of the same level and their joins, as the
+//	first levels of the search see them.
+//	Every kernel runs warm-up passes, then measured passes, and the mean time per call
+//	is reported with its standard deviation. Containment kernels run on both the
+//	sorted arrays and the bitmaps.
+//
+//	Usage: KernelBenchmark <transactions> <taxonomy> <minutil> [samples] [iterations]
+public class KernelBenchmark {
+
+	static volatile long sink;		// results are folded in here so that the calls are not optimized away
+
+	// one call of a kernel on the sample-th input
+	interface Kernel {
+		long run(int sample);
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 3) {
+			System.out.println("Usage: KernelBenchmark <transactions> <taxonomy> <minutil> [samples] [iterations]");
+			return;
+		}
+		int samples = (args.length > 3) ? Integer.parseInt(args[3]) : 10000;
+		int iterations = (args.length > 4) ? Integer.parseInt(args[4]) : 10;
+
+		AlgoMLCMiner algo = new AlgoMLCMiner(true);
+		algo.minUtil = Double.parseDouble(args[2]);
+		algo.buildUtilityMaps(args[0], args[1], Integer.MAX_VALUE);
+
+		// inputs: x before y on the same level, their join, another list z of that level
+		// and the lists preceding x, which is the preset of the top search frame
+		Random random = new Random(42);
+		List<Integer> levels = new ArrayList<Integer>();
+		for (int level = 0; level < algo.EULPerLevel.size(); level++)
+			if (algo.EULPerLevel.get(level).size() > 1) levels.add(level);
+		if (levels.isEmpty()) {
+			System.out.println("- No level holds two promising items, lower minutil");
+			return;
+		}
+
+		UtilityMap[] xs = new UtilityMap[samples], ys = new UtilityMap[samples], zs = new UtilityMap[samples];
+		UtilityMap[] joins = new UtilityMap[samples];
+		Preset[] presets = new Preset[samples];
+		int[] sampleLevels = new int[samples];
+		for (int s = 0; s < samples; s++) {
+			int level = levels.get(random.nextInt(levels.size()));
+			EUList eul = algo.EULPerLevel.get(level);
+			int i = random.nextInt(eul.size() - 1);
+			int j = i + 1 + random.nextInt(eul.size() - i - 1);
+			sampleLevels[s] = level;
+			xs[s] = eul.get(i);
+			ys[s] = eul.get(j);
+			zs[s] = eul.get(random.nextInt(eul.size()));
+			UtilityMap join = algo.construct(xs[s], ys[s]);
+			joins[s] = (join != null) ? join : xs[s];		// pruned joins are replaced by x for the containment kernels
+			presets[s] = new Preset(i);
+			for (int p = 0; p < i; p++) presets[s].add(eul.get(p));
+		}
+
+		System.out.println("Benchmark                       Cnt          Score      Error  Units");
+		measure("construct", samples, iterations, s -> {
+			UtilityMap r = algo.construct(xs[s], ys[s]);
+			return (r == null) ? 0 : r.size;
+		});
+		measure("isPrunableByEUCS", samples, iterations, s -> algo.isPrunableByEUCS(xs[s].item, ys[s].item, sampleLevels[s]) ? 1 : 0);
+		for (boolean bitmaps : new boolean[] { false, true }) {
+			algo.useBitmapTidsets = bitmaps;
+			String mode = bitmaps ? "[bitmap]" : "[array]";
+			measure("hasAllTIDS" + mode, samples, iterations, s -> algo.hasAllTIDS(zs[s], joins[s]) ? 1 : 0);
+			measure("isDuplicate" + mode, samples, iterations, s -> algo.isDuplicate(joins[s], presets[s]) ? 1 : 0);
+		}
+	}
+
+	// run 'iterations' warm-up passes then 'iterations' measured passes over all the samples
+	static void measure(String name, int samples, int iterations, Kernel kernel) {
+		for (int it = 0; it < iterations; it++) pass(samples, kernel);
+		double[] scores = new double[iterations];
+		for (int it = 0; it < iterations; it++) {
+			long start = System.nanoTime();
+			pass(samples, kernel);
+			scores[it] = (System.nanoTime() - start) / (double) samples;
+		}
+		double mean = 0, variance = 0;
+		for (double score : scores) mean += score;
+		mean /= iterations;
+		for (double score : scores) variance += (score - mean) * (score - mean);
+		double error = (iterations > 1) ? Math.sqrt(variance / (iterations - 1)) : 0;
+		System.out.println(String.format("%-30s %4d %14.3f +- %7.3f  ns/op", name, iterations, mean, error));
+	}
+
+	private static void pass(int samples, Kernel kernel) {
+		long acc = 0;
+		for (int s = 0; s < samples; s++) acc += kernel.run(s);
+		sink += acc;
+	}
+}
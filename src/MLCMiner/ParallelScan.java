@@ -0,0 +1,254 @@
+package MLCMiner;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+//	ParallelScan
+//	------------
+//	Both dataset scans of AlgoMLCMiner over tid ranges, one range per worker.
+//	  - first scan: the items are registered in the order of their first occurrence,
+//	    as the sequential scan does, then every worker sums the GWUs of its range in
+//	    an array of its own, and the arrays are added up
+//	  - second scan: every worker projects the transactions of its range into utility
+//	    maps and an EUCS of its own. The maps of the ranges are concatenated in range
+//	    order, so the tids stay sorted, and the EUCS are added up. An identical
+//	    projection first seen in an earlier range is merged into it afterwards.
+//	With integral utilities the result is the same as the sequential scans, otherwise
+//	sums may differ in their last bit, being added in another order.
+class ParallelScan {
+
+	private final AlgoMLCMiner			miner;
+	private final List<Transaction>	transactions;
+	private final int					threads;
+
+	ParallelScan(AlgoMLCMiner miner, List<Transaction> transactions, int threads) {
+		this.miner = miner;
+		this.transactions = transactions;
+		this.threads = Math.max(1, Math.min(threads, transactions.size()));
+	}
+
+	// first scan. Returns false, leaving the miner untouched, when a transaction holds
+	// an item that is also an ancestor: the paths recorded for such items change during
+	// the sequential scan, which then has to be used.
+	boolean scanFirstTime() throws IOException {
+		int items = miner.GWUs.length;
+		TaxonomyIndex index = miner.taxonomy.index();
+
+		List<int[]> firsts = run(range -> {							// first occurrences: item, tid, position
+			boolean[] seen = new boolean[items];
+			int[] found = new int[48];
+			int count = 0;
+			for (int tid = range[0]; tid < range[1]; tid++) {
+				int[] transItems = transactions.get(tid).getItems();
+				for (int i = 0; i < transItems.length; i++)
+					if (!seen[transItems[i]]) {
+						seen[transItems[i]] = true;
+						if (count + 3 > found.length) found = Arrays.copyOf(found, found.length * 2);
+						found[count++] = transItems[i];
+						found[count++] = tid;
+						found[count++] = i;
+					}
+			}
+			return Arrays.copyOf(found, count);
+		});
+
+		boolean[] inTransactions = new boolean[items];
+		boolean[] inPaths = new boolean[items];
+		long[] first = new long[items];								// tid and position of the first occurrence
+		List<Integer> order = new ArrayList<Integer>();
+		for (int[] found : firsts)
+			for (int k = 0; k < found.length; k += 3) {
+				int item = found[k];
+				if (inTransactions[item]) continue;
+				inTransactions[item] = true;
+				first[item] = ((long) found[k + 1] << 32) | found[k + 2];
+				if (inPaths[item]) return false;
+				for (int a = 1; a < index.depth(item); a++) {
+					int parent = index.ancestor(item, a);
+					if (inTransactions[parent]) return false;
+					inPaths[parent] = true;
+				}
+				order.add(item);
+			}
+		for (int item : order)										// the maps, in the sequential order
+			miner.registerItem(item, index);
+
+		List<double[]> partials = run(range -> {
+			double[] gwus = new double[items];
+			int[] exist = new int[16];
+			for (int tid = range[0]; tid < range[1]; tid++) {
+				Transaction transaction = transactions.get(tid);
+				double tu = transaction.getUtility();
+				int[] transItems = transaction.getItems();
+				int count = 0;
+				for (int i = 0; i < transItems.length; i++) {		// as scanTransactionFirstTime
+					int item = transItems[i];
+					gwus[item] += tu;
+					List<Integer> path = miner.mapItemToAncestor.get(item);
+					boolean firstSeen = first[item] == (((long) tid << 32) | i);	// the path is recorded there, the item is not counted again
+					for (int a = firstSeen ? 1 : 0; a < path.size(); a++) {
+						int parent = path.get(a);
+						boolean known = false;
+						for (int e = 0; e < count && !known; e++) known = (exist[e] == parent);
+						if (known) continue;
+						if (count == exist.length) exist = Arrays.copyOf(exist, count * 2);
+						exist[count++] = parent;
+						gwus[parent] += tu;
+					}
+				}
+			}
+			return gwus;
+		});
+		for (double[] gwus : partials)
+			for (int item = 0; item < items; item++) miner.GWUs[item] += gwus[item];
+		return true;
+	}
+
+	// the utility maps, EUCS and merged projections of one range
+	private final class Partial {
+		final UtilityMap[][]	maps;				// per level, by new name
+		final EUCS[]			eucs;
+		final List<Map<AlgoMLCMiner.ItemsKey, Integer>> merges;	// projection -> tid of its first transaction
+		long					merged = 0;
+
+		Partial() {
+			int levels = miner.maxLevel;
+			maps = new UtilityMap[levels][];
+			eucs = new EUCS[levels];
+			merges = new ArrayList<Map<AlgoMLCMiner.ItemsKey, Integer>>();
+			for (int i = 0; i < levels; i++) {
+				maps[i] = new UtilityMap[miner.itemsCountPerLevel[i] + 1];
+				if (miner.useEUCPstrategy) eucs[i] = new EUCS(miner.itemsCountPerLevel[i], miner.maxEUCSMatrixBytes);
+				merges.add(miner.mergeTransactions ? new HashMap<AlgoMLCMiner.ItemsKey, Integer>() : null);
+			}
+		}
+
+		// as AlgoMLCMiner.addProjections, into the structures of the range
+		void add(Transaction tran, int tid) {
+			for (int i = 0; i < maps.length; i++) {
+				if (tran.listTransactionUtility.get(i) == 0) continue;
+
+				double ru = 0;
+				ArrayList<Integer> items = tran.listItemsPerLevel.get(i);
+				ArrayList<Double> utilities = tran.listUtilitiesPerLevel.get(i);
+				Integer first = null;
+				if (merges.get(i) != null) {
+					first = merges.get(i).putIfAbsent(new AlgoMLCMiner.ItemsKey(items), tid);
+					if (first != null) merged++;
+				}
+				for (int j = items.size() - 1; j >= 0; j--) {
+					int item = items.get(j);
+					double nU = utilities.get(j);
+					UtilityMap ul = maps[i][item];
+					if (ul == null) maps[i][item] = ul = new UtilityMap(item);
+					if (first == null)
+						ul.addElement(tid, nU, ru);
+					else
+						ul.mergeElement(first, nU, ru);
+					ru = ru + nU;
+				}
+
+				if (eucs[i] != null) {
+					double tu = tran.listTransactionUtility.get(i);
+					for (int u = 0; u < items.size() - 1; u++) {
+						int itemU = items.get(u);
+						for (int v = u + 1; v < items.size(); v++)
+							eucs[i].add(itemU, items.get(v), tu);
+					}
+				}
+			}
+		}
+	}
+
+	// second scan, into the utility maps and EUCS of the miner
+	void scanSecondTime() throws IOException {
+		List<Partial> partials = run(range -> {
+			Partial partial = new Partial();
+			for (int tid = range[0]; tid < range[1]; tid++) {
+				Transaction tran = transactions.get(tid);
+				if (tran.items.length == 0) continue;
+				tran.setLevelTransaction(miner.maxLevel);
+				tran.removeUnpromisingItems(miner.oldNameToNewNamesPerLevel, miner.mapItemToAncestor, miner.mapItemToLevel);
+				partial.add(tran, tid);
+				tran.releaseLevels();
+			}
+			return partial;
+		});
+
+		for (int i = 0; i < miner.maxLevel; i++) {
+			Map<AlgoMLCMiner.ItemsKey, Integer> firsts = new HashMap<AlgoMLCMiner.ItemsKey, Integer>();
+			EUList eul = miner.EULPerLevel.get(i);
+			for (Partial partial : partials) {
+				Map<Integer, Integer> into = new HashMap<Integer, Integer>();	// first tid of the range -> earlier first tid
+				if (partial.merges.get(i) != null)
+					for (Map.Entry<AlgoMLCMiner.ItemsKey, Integer> merge : partial.merges.get(i).entrySet()) {
+						Integer earlier = firsts.putIfAbsent(merge.getKey(), merge.getValue());
+						if (earlier != null) {
+							into.put(merge.getValue(), earlier);
+							miner.mergedCount++;					// the others of its range are counted already
+						}
+					}
+				for (int name = 1; name < partial.maps[i].length; name++) {
+					UtilityMap block = partial.maps[i][name];
+					if (block == null) continue;
+					UtilityMap ul = eul.get(name - 1);
+					if (into.isEmpty())
+						ul.append(block);
+					else
+						for (int e = 0; e < block.size; e++) {
+							Integer earlier = into.get(block.tids[e]);
+							if (earlier == null)
+								ul.addElement(block.tids[e], block.iutils[e], block.rutils[e], block.weights[e]);
+							else
+								ul.mergeElement(earlier, block.iutils[e], block.rutils[e], block.weights[e]);
+						}
+				}
+				if (partial.eucs[i] != null) miner.EUCSPerLevel.get(i).addAll(partial.eucs[i]);
+				partial.maps[i] = null;
+				partial.eucs[i] = null;
+			}
+		}
+		for (Partial partial : partials) miner.mergedCount += partial.merged;
+	}
+
+	// run 'task' on each tid range, results in range order
+	private <T> List<T> run(RangeTask<T> task) throws IOException {
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<T>> futures = new ArrayList<Future<T>>();
+			int n = transactions.size();
+			for (int r = 0; r < threads; r++) {
+				final int[] range = { (int) ((long) n * r / threads), (int) ((long) n * (r + 1) / threads) };
+				futures.add(pool.submit((Callable<T>) () -> task.scan(range)));
+			}
+			List<T> results = new ArrayList<T>();
+			for (Future<T> future : futures) results.add(future.get());
+			return results;
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		}
+		catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+			if (e.getCause() instanceof Error) throw (Error) e.getCause();
+			throw new IOException(e.getCause());
+		}
+		finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private interface RangeTask<T> {
+		T scan(int[] range);
+	}
+}
@@ -0,0 +1,18 @@
+package MLCMiner;
+
+// Represents a pattern found by MLC-Miner, buffered until it can be written in search order.
+// publish() hands patterns of this type to its subscriber, with the original item names.
+public class Pattern {
+
+	public final int[] itemset;		// items of the pattern (renamed items of its level)
+	public final double utility;	// utility of the pattern
+	public final int support;		// support of the pattern
+	public final int level;			// taxonomy level the pattern belongs to
+
+	public Pattern(int[] itemset, double utility, int support, int level) {
+		this.itemset = itemset;
+		this.utility = utility;
+		this.support = support;
+		this.level = level;
+	}
+}
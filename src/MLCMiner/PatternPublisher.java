@@ -0,0 +1,68 @@
+package MLCMiner;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.function.Consumer;
+
+//	PatternPublisher
+//	----------------
+//	Flow.Publisher of the patterns of one mining run. The run starts when the
+//	subscriber subscribes, on a thread of its own, and every pattern is submitted as
+//	soon as the miner would have written it:
+//	  - backpressure: at most 'bufferSize' patterns wait for the subscriber's demand,
+//	    past that the search itself pauses until the subscriber requests more
+//	  - cancellation: once the subscription is cancelled the search stops at the
+//	    next pattern found
+//	The run ends with onComplete, or onError if it failed. A miner holds the state
+//	of one run, so a publisher accepts a single subscriber.
+public class PatternPublisher<T> implements Flow.Publisher<T> {
+
+	// a mining run handing its patterns to 'sink'
+	public interface Run<T> {
+		void mine(Consumer<T> sink) throws IOException;
+	}
+
+	private final Run<T>	run;
+	private final int		bufferSize;
+	private boolean			subscribed = false;
+
+	public PatternPublisher(Run<T> run, int bufferSize) {
+		this.run = run;
+		this.bufferSize = bufferSize;
+	}
+
+	@Override
+	public synchronized void subscribe(Flow.Subscriber<? super T> subscriber) {
+		if (subscribed) {									// rule 1.9: onSubscribe comes before onError
+			subscriber.onSubscribe(new Flow.Subscription() {
+				public void request(long n) { }
+				public void cancel() { }
+			});
+			subscriber.onError(new IllegalStateException("A pattern publisher accepts a single subscriber"));
+			return;
+		}
+		subscribed = true;
+		SubmissionPublisher<T> publisher = new SubmissionPublisher<T>(ForkJoinPool.commonPool(), bufferSize);
+		publisher.subscribe(subscriber);
+		Thread thread = new Thread(() -> {
+			try {
+				run.mine(pattern -> {
+					if (!publisher.hasSubscribers()) throw new CancellationException();
+					publisher.submit(pattern);				// blocks while the subscriber's buffer is full
+				});
+				publisher.close();
+			}
+			catch (CancellationException e) {
+				publisher.close();							// nobody is left to be told
+			}
+			catch (Throwable e) {
+				publisher.closeExceptionally(e);
+			}
+		}, "pattern-publisher");
+		thread.setDaemon(true);
+		thread.start();
+	}
+}
@@ -0,0 +1,56 @@
+package MLCMiner;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+//	PhaseEvent
+//	----------
+//	Java Flight Recorder event covering one phase of an MLC-Miner run: load, taxonomy,
+//	GWU scan, rename, projection (the second scan, EUCS build included) and the mining
+//	of each level. Recorded with the default JFR settings, at a negligible cost per phase.
+@Name("MLCMiner.Phase")
+@Label("Mining Phase")
+@Category({ "MLC-Miner" })
+@Description("A phase of an MLC-Miner run")
+@StackTrace(false)
+public class PhaseEvent extends Event {
+
+	@Label("Phase")
+	String	phase;
+
+	@Label("Level")
+	@Description("Taxonomy level mined, 0 for the phases covering all levels")
+	int		level;
+
+	@Label("Count")
+	@Description("Transactions scanned, items renamed or patterns found, depending on the phase")
+	long	count;
+
+	@Label("EUCS Build Time")
+	@Description("Part of the projection phase spent adding pairs to the EUCS")
+	@Timespan(Timespan.NANOSECONDS)
+	long	eucsTime;
+
+	// begin a phase, 'level' is 1-based or 0 for all levels
+	static PhaseEvent start(String phase, int level) {
+		PhaseEvent event = new PhaseEvent();
+		event.phase = phase;
+		event.level = level;
+		event.begin();
+		return event;
+	}
+
+	// end the phase and record it
+	void finish(long count) {
+		end();
+		if (shouldCommit()) {
+			this.count = count;
+			commit();
+		}
+	}
+}
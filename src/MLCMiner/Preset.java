@@ -0,0 +1,96 @@
+package MLCMiner;
+
+import java.util.Arrays;
+
+//	Preset
+//	------
+//	The presets of a search path, as one stack: the frame of a subtree pushes its
+//	maps above the ones of its parent and is cut back when it returns, so the preset
+//	is shared across the recursion instead of being copied at every level. Only a
+//	forked branch takes a copy, it runs beside the frame that keeps pushing.
+//	Each entry keeps a fingerprint of its tidset in columns: support, first and last
+//	tids and a 64-bit signature (bit 'tid mod 64' set for each tid), along with their
+//	summary over the entry and all the ones below it. A tidset can only be subsumed
+//	by a map whose support is not lower, whose tid range covers its own and whose
+//	signature holds its signature, so most checks are rejected on these values, and
+//	a scan stops as soon as the summary of the entries left rules them all out.
+final class Preset {
+
+	UtilityMap[]	maps;
+	int[]			supports, firsts, lasts;
+	long[]			signatures;
+	int[]			maxSupports, minFirsts, maxLasts;	// summary of the entries 0..k
+	long[]			allSignatures;
+	int				size = 0;
+
+	Preset() {
+		this(16);
+	}
+
+	Preset(int capacity) {
+		capacity = Math.max(capacity, 1);
+		maps = new UtilityMap[capacity];
+		supports = new int[capacity];
+		firsts = new int[capacity];
+		lasts = new int[capacity];
+		signatures = new long[capacity];
+		maxSupports = new int[capacity];
+		minFirsts = new int[capacity];
+		maxLasts = new int[capacity];
+		allSignatures = new long[capacity];
+	}
+
+	int size() {
+		return size;
+	}
+
+	// push a map on the preset
+	void add(UtilityMap ul) {
+		if (ul == null) return;
+		if (size == maps.length) grow(size << 1);
+		int k = size++;
+		maps[k] = ul;
+		supports[k] = ul.getSupport();
+		firsts[k] = (ul.size > 0) ? ul.tids[0] : Integer.MAX_VALUE;
+		lasts[k] = (ul.size > 0) ? ul.tids[ul.size - 1] : Integer.MIN_VALUE;
+		signatures[k] = ul.signature();
+		maxSupports[k] = (k > 0) ? Math.max(supports[k], maxSupports[k - 1]) : supports[k];
+		minFirsts[k] = (k > 0) ? Math.min(firsts[k], minFirsts[k - 1]) : firsts[k];
+		maxLasts[k] = (k > 0) ? Math.max(lasts[k], maxLasts[k - 1]) : lasts[k];
+		allSignatures[k] = (k > 0) ? signatures[k] | allSignatures[k - 1] : signatures[k];
+	}
+
+	// pop the maps pushed above the first 'size' ones
+	void truncate(int size) {
+		Arrays.fill(maps, size, this.size, null);
+		this.size = size;
+	}
+
+	// a copy of the current preset, for a forked branch
+	Preset copy() {
+		Preset p = new Preset(size + 16);
+		System.arraycopy(maps, 0, p.maps, 0, size);
+		System.arraycopy(supports, 0, p.supports, 0, size);
+		System.arraycopy(firsts, 0, p.firsts, 0, size);
+		System.arraycopy(lasts, 0, p.lasts, 0, size);
+		System.arraycopy(signatures, 0, p.signatures, 0, size);
+		System.arraycopy(maxSupports, 0, p.maxSupports, 0, size);
+		System.arraycopy(minFirsts, 0, p.minFirsts, 0, size);
+		System.arraycopy(maxLasts, 0, p.maxLasts, 0, size);
+		System.arraycopy(allSignatures, 0, p.allSignatures, 0, size);
+		p.size = size;
+		return p;
+	}
+
+	private void grow(int capacity) {
+		maps = Arrays.copyOf(maps, capacity);
+		supports = Arrays.copyOf(supports, capacity);
+		firsts = Arrays.copyOf(firsts, capacity);
+		lasts = Arrays.copyOf(lasts, capacity);
+		signatures = Arrays.copyOf(signatures, capacity);
+		maxSupports = Arrays.copyOf(maxSupports, capacity);
+		minFirsts = Arrays.copyOf(minFirsts, capacity);
+		maxLasts = Arrays.copyOf(maxLasts, capacity);
+		allSignatures = Arrays.copyOf(allSignatures, capacity);
+	}
+}
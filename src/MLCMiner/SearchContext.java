@@ -0,0 +1,70 @@
+package MLCMiner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+//	SearchContext
+//	-------------
+//	State owned by a single search task: its counters and the patterns it found.
+//	The sequential miner uses one context and writes patterns straight through,
+//	each parallel task owns a context whose patterns are buffered and merged in
+//	search order, so the output never depends on thread scheduling.
+//	It also holds the arena of the search: for each recursion depth, the temporary
+//	utility maps, lists and item buffer of a genCHUI frame. They are overwritten by
+//	the next sibling branch of that depth, so a search allocates them once per depth.
+class SearchContext {
+
+	int				patternCount = 0;		// patterns found by this task
+	int				candidateCount = 0;		// candidates checked by this task
+	int				depth = 0;				// current recursion depth of the search
+	List<Pattern>	patterns = null;		// buffered patterns, null = write straight through
+	List<AlgoMLCMiner.BranchTask> branches = null;	// forked top-level branches, joined by the caller
+	int[]			thresholdCounts = null;	// sweep mode: patterns by highest threshold met
+	Frame[]			frames = new Frame[0];	// arena, by recursion depth
+
+	// reusable temporaries of the genCHUI frames of one depth
+	static final class Frame {
+		final UtilityMap	newgen = new UtilityMap(0);		// tidset of the generator
+		final UtilityMap	closure0 = new UtilityMap(0);	// tidsets of the growing closure, in turn
+		final UtilityMap	closure1 = new UtilityMap(0);
+		final EUList		post = new EUList();			// postset of the closure
+		int[]				items = new int[16];			// items of the growing closure
+
+		// the closure map to construct into, never the one being extended
+		UtilityMap closure(UtilityMap current) {
+			return (current == closure0) ? closure1 : closure0;
+		}
+	}
+
+	SearchContext(int depth, boolean buffered) {
+		this.depth = depth;
+		if (buffered) patterns = new ArrayList<Pattern>();
+	}
+
+	// the arena frame of the current depth
+	Frame frame() {
+		if (depth >= frames.length)
+			frames = Arrays.copyOf(frames, Math.max(depth + 1, frames.length * 2));
+		Frame frame = frames[depth];
+		if (frame == null) frames[depth] = frame = new Frame();
+		return frame;
+	}
+
+	// append the results of a task that was forked from this one
+	void merge(SearchContext child) {
+		patternCount += child.patternCount;
+		candidateCount += child.candidateCount;
+		if (patterns != null && child.patterns != null)
+			patterns.addAll(child.patterns);
+		thresholdCounts = addCounts(thresholdCounts, child.thresholdCounts);
+	}
+
+	// element-wise sum of two count arrays, either may be null
+	static int[] addCounts(int[] to, int[] from) {
+		if (from == null) return to;
+		if (to == null) return from.clone();
+		for (int k = 0; k < from.length; k++) to[k] += from[k];
+		return to;
+	}
+}
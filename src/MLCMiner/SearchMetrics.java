@@ -0,0 +1,140 @@
+package MLCMiner;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+//	SearchMetrics
+//	-------------
+//	Search-effort counters of one MLC-Miner run, kept per taxonomy level and per
+//	recursion depth. The counters are LongAdders, so the tasks of a parallel run
+//	update them without contending, and they can be read at any time through JMX
+//	under "MLCMiner:type=SearchMetrics,id=<run>" while the run lasts, then they are
+//	unregistered and only printStatistics shows them. Depths from MAX_DEPTH on share
+//	the last row. The miner only calls in when metrics are collected, so a run
+//	without them pays a null test per kernel call.
+public class SearchMetrics implements SearchMetricsMBean {
+
+	static final int	MAX_DEPTH = 64;
+	static final AtomicLong	runs = new AtomicLong();	// ids of the registrations, never reused
+
+	static final int	CONSTRUCT = 0;			// counter columns
+	static final int	LA_PRUNE = 1;
+	static final int	EUCP_PRUNE = 2;
+	static final int	DUPLICATE_CHECK = 3;
+	static final int	DUPLICATE_HIT = 4;
+	static final int	CONTAINMENT_HIT = 5;
+	static final int	TIDSET_ELEMENTS = 6;
+	static final int	COUNTERS = 7;
+
+	final int			levels;
+	final LongAdder[]	cells;					// [level][depth][counter], flattened
+	ObjectName			name = null;			// registration, null if it failed
+
+	SearchMetrics(int levels) {
+		this.levels = levels;
+		cells = new LongAdder[Math.max(levels, 1) * MAX_DEPTH * COUNTERS];
+		for (int i = 0; i < cells.length; i++) cells[i] = new LongAdder();
+	}
+
+	// create the counters of a run and register them on the platform MBean server
+	// under an id of their own, until unregister() at the end of the run
+	static SearchMetrics register(int levels) {
+		SearchMetrics metrics = new SearchMetrics(levels);
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName("MLCMiner:type=SearchMetrics,id=" + runs.incrementAndGet());
+			server.registerMBean(metrics, name);
+			metrics.name = name;
+		}
+		catch (JMException e) {
+			System.out.println("- Search metrics not published through JMX: " + e.getMessage());
+		}
+		return metrics;
+	}
+
+	// drop the registration, the counters stay readable by the miner
+	void unregister() {
+		if (name == null) return;
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+		}
+		catch (JMException e) {
+		}
+		name = null;
+	}
+
+	private void add(int level, int depth, int counter, long value) {
+		cells[(level * MAX_DEPTH + Math.min(depth, MAX_DEPTH - 1)) * COUNTERS + counter].add(value);
+	}
+
+	// a join, 'result' being null when LA-prune left it early
+	void construct(int level, int depth, UtilityMap result) {
+		add(level, depth, CONSTRUCT, 1);
+		if (result == null)
+			add(level, depth, LA_PRUNE, 1);
+		else
+			add(level, depth, TIDSET_ELEMENTS, result.size);
+	}
+
+	void eucpPrune(int level, int depth) {
+		add(level, depth, EUCP_PRUNE, 1);
+	}
+
+	void duplicate(int level, int depth, boolean hit) {
+		add(level, depth, DUPLICATE_CHECK, 1);
+		if (hit) add(level, depth, DUPLICATE_HIT, 1);
+	}
+
+	void containment(int level, int depth) {
+		add(level, depth, CONTAINMENT_HIT, 1);
+	}
+
+	private long total(int counter) {
+		long sum = 0;
+		for (int i = counter; i < cells.length; i += COUNTERS) sum += cells[i].sum();
+		return sum;
+	}
+
+	private static double average(long elements, long joins) {
+		return (joins > 0) ? (double) elements / joins : 0;
+	}
+
+	public long getConstructCalls()		{ return total(CONSTRUCT); }
+	public long getLaPrunes()			{ return total(LA_PRUNE); }
+	public long getEucpPrunes()			{ return total(EUCP_PRUNE); }
+	public long getDuplicateChecks()	{ return total(DUPLICATE_CHECK); }
+	public long getDuplicateHits()		{ return total(DUPLICATE_HIT); }
+	public long getContainmentHits()	{ return total(CONTAINMENT_HIT); }
+
+	public double getAverageTidsetSize() {
+		return average(total(TIDSET_ELEMENTS), total(CONSTRUCT) - total(LA_PRUNE));
+	}
+
+	public String[] getTable() {
+		List<String> rows = new ArrayList<String>();
+		rows.add(String.format("%5s %5s %12s %10s %10s %12s %10s %12s %8s",
+				"level", "depth", "construct", "LA-prune", "EUCP", "dup.checks", "dup.hits", "containment", "avg.tids"));
+		long[] row = new long[COUNTERS];
+		for (int level = 0; level < levels; level++)
+			for (int depth = 0; depth < MAX_DEPTH; depth++) {
+				boolean used = false;
+				for (int c = 0; c < COUNTERS; c++) {
+					row[c] = cells[(level * MAX_DEPTH + depth) * COUNTERS + c].sum();
+					used |= row[c] != 0;
+				}
+				if (!used) continue;
+				rows.add(String.format("%5d %5s %12d %10d %10d %12d %10d %12d %8.1f",
+						level + 1, (depth == MAX_DEPTH - 1) ? depth + "+" : "" + depth,
+						row[CONSTRUCT], row[LA_PRUNE], row[EUCP_PRUNE], row[DUPLICATE_CHECK], row[DUPLICATE_HIT],
+						row[CONTAINMENT_HIT], average(row[TIDSET_ELEMENTS], row[CONSTRUCT] - row[LA_PRUNE])));
+			}
+		return rows.toArray(new String[rows.size()]);
+	}
+}
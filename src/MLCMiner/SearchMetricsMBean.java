@@ -0,0 +1,17 @@
+package MLCMiner;
+
+//	SearchMetricsMBean
+//	------------------
+//	JMX view of the search-effort counters of a running MLC-Miner, see SearchMetrics.
+public interface SearchMetricsMBean {
+
+	long getConstructCalls();			// tidset joins
+	long getLaPrunes();					// joins left early by LA-prune
+	long getEucpPrunes();				// pairs skipped by the EUCS
+	long getDuplicateChecks();			// isDuplicate calls
+	long getDuplicateHits();			// generators found to be duplicates
+	long getContainmentHits();			// hasAllTIDS successes, items added to a closure
+	double getAverageTidsetSize();		// elements per completed join
+
+	String[] getTable();				// the counters per level and recursion depth
+}
@@ -0,0 +1,43 @@
+package MLCMiner;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+//	SubtreeEvent
+//	------------
+//	Java Flight Recorder event timing the search subtree of one closed itemset, for the
+//	itemsets found above AlgoMLCMiner.subtreeEventDepth. Only the subtrees lasting longer
+//	than the threshold (20 ms by default, adjustable in the JFR settings) are recorded,
+//	which samples the expensive ones. Branches forked to other tasks are not included.
+@Name("MLCMiner.Subtree")
+@Label("Search Subtree")
+@Category({ "MLC-Miner" })
+@Description("Search of the subtree of a closed itemset")
+@Threshold("20 ms")
+@StackTrace(false)
+public class SubtreeEvent extends Event {
+
+	@Label("Level")
+	int		level;
+
+	@Label("Depth")
+	int		depth;
+
+	@Label("Itemset")
+	@Description("Original names of the items of the closed itemset")
+	String	itemset;
+
+	@Label("Tidset Size")
+	int		tidsetSize;
+
+	@Label("Candidates")
+	long	candidates;
+
+	@Label("Patterns")
+	long	patterns;
+}
@@ -3,35 +3,58 @@ package MLCMiner;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 // Taxonomy
 // --------
-// Class to store a dataset's taxonomy on memory for direct access
+// Class to store a dataset's taxonomy on memory for direct access,
+// the parent of each child is kept in an array and indexed by TaxonomyIndex
 public class Taxonomy {
 
-	public HashMap<Integer, Integer> mapChildToParent;	// K: Child - V: Parent
+	int[]			parent;				// parent[child], 0 = none
+	TaxonomyIndex	index = null;		// built on first use, dropped by add()
 	
 	// default constructor
 	public Taxonomy() { 				 
-		mapChildToParent = new HashMap<Integer, Integer>();
+		parent = new int[16];
 	}
 
 	// another constructor
 	public Taxonomy(String filename, Dataset db) throws IOException { 
-		mapChildToParent = new HashMap<Integer, Integer>();
+		parent = new int[16];
 		load(filename, db);
 	}
 	
-	// add a tuple to the taxonomy 
+	// add a tuple to the taxonomy, a child added twice keeps its last parent
 	public void add(int p, int c) {
-		mapChildToParent.put(c, p);
+		int top = Math.max(p, c);						// the parent is indexed too, its id may be the larger
+		if (top >= parent.length)
+			parent = Arrays.copyOf(parent, Math.max(top + 1, parent.length * 2));
+		parent[c] = p;
+		index = null;
+	}
+	
+	// the array index of this taxonomy
+	public TaxonomyIndex index() {
+		TaxonomyIndex i = index;
+		if (i == null) index = i = new TaxonomyIndex(parent);
+		return i;
 	}
 	
 	// load taxonomy from text file
 	public void load(String filename, Dataset db) throws IOException {
+		if (BinaryDataset.isBinary(filename)) {					// pre-resolved parents, see BinaryDataset
+			int[] parent = BinaryDataset.readParents(filename);
+			for (int child = 0; child < parent.length; child++) {
+				if (parent[child] == 0) continue;
+				if (parent[child] > db.getMaxItem())
+					db.setMaxItem(parent[child]);
+				add(parent[child], child);
+			}
+			return;
+		}
 		BufferedReader	reader = new BufferedReader(new FileReader(filename)); 
 		String			line;
 
@@ -59,23 +82,21 @@ public class Taxonomy {
 		}
 	}
 	
-	// access index-th parent
+	// parent of a child, null if it has none
 	public Integer parent(int child) {
-		return mapChildToParent.get(child);
+		int p = index().parent(child);
+		return (p == 0) ? null : p;
 	}
 
 	public Set<Integer> children() {
-		return mapChildToParent.keySet();
+		Set<Integer> children = new LinkedHashSet<Integer>();
+		for (int c = 1; c < parent.length; c++)
+			if (parent[c] != 0) children.add(c);
+		return children;
 	}
 		
 	// return the number of parent nodes in the taxonomy - for statistical purposes only
 	public int parentCount() {
-		ArrayList<Integer> parents = new ArrayList<>();
-		ArrayList<Integer> v = new ArrayList<>(mapChildToParent.values());
-		for (Integer i : v) {
-			if (!parents.contains(i))
-				parents.add(i);
-		}
-		return parents.size();
+		return index().parentCount();
 	}
 }
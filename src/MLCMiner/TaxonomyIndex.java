@@ -0,0 +1,119 @@
+package MLCMiner;
+
+//	TaxonomyIndex
+//	-------------
+//	Array form of a taxonomy, built once from the resolved parent of every item:
+//	  - parent[] and depth[] (1 = top level, as the levels used by the miners)
+//	  - the ancestor path of every item flattened into one int[], item first, root last
+//	  - pre-order interval labels, so that "a is an ancestor of b" is two comparisons
+//	Items beyond the indexed range have no parent and are on the top level.
+//	Every array is sized by the largest item id, children and parents alike, so a
+//	taxonomy with sparse ids costs memory in proportion to its largest id.
+public class TaxonomyIndex {
+
+	final int[]	parent;			// parent of each item, 0 = none
+	final int[]	depth;			// 1 for the top level items
+	final int[]	pathStart;		// ancestors of item i are path[pathStart[i] .. pathStart[i+1])
+	final int[]	path;
+	final int[]	pre;			// pre-order number of each item
+	final int[]	last;			// largest pre-order number of its subtree
+	final int	parentCount;	// number of distinct parent items
+	final int	maxDepth;
+
+	// build the index from the parent array, parent[item] = 0 when item has no parent
+	public TaxonomyIndex(int[] parentOf) {
+		int n = parentOf.length;
+		parent = parentOf.clone();
+		depth = new int[n];
+
+		for (int item = 1; item < n; item++)				// a parent outside would cut its subtree off
+			if (parent[item] < 0 || parent[item] >= n)
+				throw new IllegalArgumentException("Parent " + parent[item] + " of item " + item + " is outside the index of " + n + " items");
+
+		int[] stack = new int[n + 1];
+		int deepest = 0;
+		for (int item = 1; item < n; item++) {				// depths, walking up to the first known one
+			int top = 0;
+			int x = item;
+			while (x > 0 && x < n && depth[x] == 0) {
+				if (top > n) throw new IllegalArgumentException("Cyclic taxonomy at item " + item);
+				stack[top++] = x;
+				x = parent[x];
+			}
+			int d = (x > 0 && x < n) ? depth[x] : 0;
+			while (top > 0) depth[stack[--top]] = ++d;
+			if (deepest < depth[item]) deepest = depth[item];
+		}
+		maxDepth = deepest;
+
+		pathStart = new int[n + 1];
+		for (int item = 0; item < n; item++)
+			pathStart[item + 1] = pathStart[item] + depth[item];
+		path = new int[pathStart[n]];
+		for (int item = 1; item < n; item++)
+			for (int p = pathStart[item], x = item; p < pathStart[item + 1]; p++, x = parent[x])
+				path[p] = x;
+
+		int[] childStart = new int[n + 1];					// children of each item, counting sort
+		int parents = 0;
+		for (int item = 1; item < n; item++)
+			if (parent[item] > 0 && parent[item] < n && childStart[parent[item] + 1]++ == 0) parents++;
+		parentCount = parents;
+		for (int item = 0; item < n; item++)
+			childStart[item + 1] += childStart[item];
+		int[] children = new int[childStart[n]];
+		int[] fill = childStart.clone();
+		for (int item = 1; item < n; item++)
+			if (parent[item] > 0 && parent[item] < n) children[fill[parent[item]]++] = item;
+
+		pre = new int[n];									// pre-order numbering from every root
+		last = new int[n];
+		int counter = 0;
+		for (int root = 1; root < n; root++) {
+			if (parent[root] > 0 && parent[root] < n) continue;
+			int top = 0;
+			stack[top++] = root;
+			while (top > 0) {
+				int x = stack[--top];
+				pre[x] = counter++;
+				for (int c = childStart[x + 1] - 1; c >= childStart[x]; c--)
+					stack[top++] = children[c];
+			}
+		}
+		for (int item = 1; item < n; item++) last[item] = pre[item];
+		for (int d = maxDepth; d > 1; d--)					// subtree ends, deepest items first
+			for (int item = 1; item < n; item++)
+				if (depth[item] == d && last[parent[item]] < last[item]) last[parent[item]] = last[item];
+	}
+
+	// parent of an item, 0 if it has none
+	public int parent(int item) {
+		return (item > 0 && item < parent.length) ? parent[item] : 0;
+	}
+
+	// level of an item, 1 for the top level
+	public int depth(int item) {
+		return (item > 0 && item < depth.length) ? depth[item] : 1;
+	}
+
+	// k-th ancestor of an item, k = 0 being the item itself and k = depth(item) - 1 its root
+	public int ancestor(int item, int k) {
+		return (item > 0 && item < depth.length) ? path[pathStart[item] + k] : item;
+	}
+
+	// true if a is b or one of its ancestors
+	public boolean isAncestor(int a, int b) {
+		if (a <= 0 || b <= 0 || a >= pre.length || b >= pre.length) return a == b;
+		return pre[a] <= pre[b] && pre[b] <= last[a];
+	}
+
+	// number of distinct parent items
+	public int parentCount() {
+		return parentCount;
+	}
+
+	// depth of the deepest item
+	public int maxDepth() {
+		return maxDepth;
+	}
+}
@@ -12,9 +12,18 @@ public class TestMLCMiner {
 		double	minutil = 40;					// user-specified minutil value
 
 		boolean	eucp = false;					// EUCP enabling flag
+		int		threads = 1;					// worker threads, 1 = sequential mining
+		boolean	bitmaps = false;				// bitmap tidsets instead of sorted tid arrays
+		int		topk = 0;						// > 0: the k patterns of highest utility, minutil is then a floor
+		double[] sweep = null;					// e.g. {40, 60, 80}: one run tagging each pattern with the highest threshold met
 
-		AlgoMLCMiner algo = new AlgoMLCMiner(eucp);
-		algo.runAlgorithm(trans, tax, "output_mlc.txt", minutil, Integer.MAX_VALUE);
+		AlgoMLCMiner algo = new AlgoMLCMiner(eucp, threads);
+		algo.useBitmapTidsets = bitmaps;
+		algo.topK = topk;
+		if (sweep != null)
+			algo.runSweep(trans, tax, "output_mlc.txt", sweep, Integer.MAX_VALUE);
+		else
+			algo.runAlgorithm(trans, tax, "output_mlc.txt", minutil, Integer.MAX_VALUE);
 		algo.printStatistics();
 	}
 	
@@ -0,0 +1,113 @@
+package MLCMiner;
+
+//	TidBitmap
+//	---------
+//	Compressed bitmap of a tidset, organised like a roaring bitmap: tids are split
+//	by their high 16 bits into containers, a sparse container keeps its low 16 bits
+//	as a sorted char[], a dense one (more than 4096 tids) as a 65536-bit long[].
+//	Subset tests on dense containers are word-parallel ANDNOTs.
+//	The bitmap is immutable once built, so it can be shared between mining threads.
+public final class TidBitmap {
+
+	static final int ARRAY_LIMIT = 4096;		// largest cardinality kept as a sorted array
+	static final int BITMAP_WORDS = 1024;		// 65536 bits
+
+	final char[]	keys;			// high 16 bits of the tids of each container, increasing
+	final int[]		cards;			// number of tids in each container
+	final char[][]	arrays;			// sparse containers, null when the container is dense
+	final long[][]	bitmaps;		// dense containers, null when the container is sparse
+	final int		cardinality;	// number of tids in the bitmap
+
+	// build the bitmap of the first 'size' tids of a sorted tid array
+	public TidBitmap(int[] tids, int size) {
+		int count = 0;
+		for (int i = 0; i < size; i++)
+			if (i == 0 || (tids[i] >>> 16) != (tids[i-1] >>> 16)) count++;
+
+		keys = new char[count];
+		cards = new int[count];
+		arrays = new char[count][];
+		bitmaps = new long[count][];
+		cardinality = size;
+
+		int c = 0;
+		for (int start = 0; start < size; c++) {
+			int key = tids[start] >>> 16;
+			int end = start;
+			while (end < size && (tids[end] >>> 16) == key) end++;
+
+			keys[c] = (char) key;
+			cards[c] = end - start;
+			if (end - start <= ARRAY_LIMIT) {
+				char[] values = new char[end - start];
+				for (int i = start; i < end; i++)
+					values[i - start] = (char) tids[i];
+				arrays[c] = values;
+			}
+			else {
+				long[] words = new long[BITMAP_WORDS];
+				for (int i = start; i < end; i++) {
+					int low = tids[i] & 0xFFFF;
+					words[low >>> 6] |= 1L << low;
+				}
+				bitmaps[c] = words;
+			}
+			start = end;
+		}
+	}
+
+	// number of tids in this bitmap
+	public int getCardinality() {
+		return cardinality;
+	}
+
+	// check if sub \subseteq this
+	public boolean containsAll(TidBitmap sub) {
+		if (sub.cardinality > cardinality) return false;
+		int i = 0;
+		int n = keys.length;
+		for (int k = 0; k < sub.keys.length; k++) {
+			char key = sub.keys[k];
+			while (i < n && keys[i] < key) i++;
+			if (i == n || keys[i] != key) return false;
+			if (!containerContainsAll(i, sub, k)) return false;
+			i++;
+		}
+		return true;
+	}
+
+	// check if the k-th container of sub is a subset of the i-th container of this bitmap
+	private boolean containerContainsAll(int i, TidBitmap sub, int k) {
+		if (sub.cards[k] > cards[i]) return false;
+		long[] words = bitmaps[i];
+		long[] subWords = sub.bitmaps[k];
+
+		if (words != null && subWords != null) {			// dense \ dense = empty ?
+			for (int w = 0; w < BITMAP_WORDS; w++)
+				if ((subWords[w] & ~words[w]) != 0) return false;
+			return true;
+		}
+
+		if (words != null) {								// sparse into dense: probe the bits
+			char[] values = sub.arrays[k];
+			for (int v = 0; v < values.length; v++) {
+				int low = values[v];
+				if ((words[low >>> 6] & (1L << low)) == 0) return false;
+			}
+			return true;
+		}
+
+		char[] values = arrays[i];							// sparse into sparse: merge
+		char[] subValues = sub.arrays[k];
+		if (subValues == null) return false;				// a dense container never fits a sparse one
+		if (subValues[0] < values[0] || subValues[subValues.length-1] > values[values.length-1]) return false;
+		int p = 0;
+		for (int v = 0; v < subValues.length; v++) {
+			char low = subValues[v];
+			while (p < values.length && values[p] < low) p++;
+			if (p == values.length || values[p] != low) return false;
+			p++;
+		}
+		return true;
+	}
+}
@@ -61,6 +61,13 @@ public class Transaction {
 		}
 	}
 	
+	// drop the per-level projections once they have been consumed
+	public void releaseLevels() {
+		listItemsPerLevel = new ArrayList<ArrayList<Integer>>();
+		listUtilitiesPerLevel = new ArrayList<ArrayList<Double>>();
+		listTransactionUtility = new ArrayList<Double>();
+	}
+	
 	public void AddItemToTransaction(int level,int item,double utility) {
 		listItemsPerLevel.get(level-1).add(item);
 		listUtilitiesPerLevel.get(level-1).add(utility);
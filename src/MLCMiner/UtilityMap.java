@@ -1,53 +1,379 @@
 package MLCMiner;
 
-import java.util.HashMap;
+import java.util.Arrays;
 
 //	UtilityMap
 //	----------
 //	UtilityMap structure, Utility-List and P-Set hybrid
-//	Coded by Trinh D.D. Nguyen, 
+//	Coded by Trinh D.D. Nguyen,
+//
+//	Elements are stored column-wise: a sorted int[] of tids with parallel double[]
+//	columns for the iutils and rutils, so joins and tidset containment tests are
+//	merges over primitive arrays instead of boxed hash lookups.
+//	An element may stand for several identical transactions merged into one, its
+//	weight column holds how many, so the support is the sum of the weights.
+//	When every utility is integral and small enough, a map may use the fixed-point
+//	layout instead: int columns in place of the double ones, and for the base maps
+//	the iutils may be dictionary-encoded, as char codes into the distinct values.
 public class UtilityMap {
 	int		item;  			// the item
 	double	sumIutils = 0;	// the sum of item utilities
 	double	sumRutils = 0;	// the sum of remaining utilities
-	HashMap<Integer, Element> mapElements = new HashMap<Integer, Element>();
+	int[]	tids;			// transaction ids, in increasing order
+	double[] iutils;		// itemset utility of each tid
+	double[] rutils;		// remaining utility of each tid
+	int[]	weights;		// number of transactions merged into each tid
 	int size;
-	
+	int support = 0;		// sum of the weights
+	TidBitmap bitmap = null;	// compressed copy of the tidset, built on demand
+	long	signature = 0;	// fingerprint of the tidset, see signature()
+	int[]	fixedIutils = null;	// fixed-point layout: iutils and rutils as int, the double columns are null
+	int[]	fixedRutils = null;
+	char[]	iutilCodes = null;	// dictionary layout of the fixed iutils, fixedIutils is then null
+	int[]	dictionary = null;	// distinct iutils, in increasing order
+
 	// Constructor.
 	// @param item the item that is used for this utility list
 	public UtilityMap(int item){
+		this(item, 8);
+	}
+
+	// Constructor reserving room for a known number of elements
+	public UtilityMap(int item, int capacity) {
 		this.item = item;
 		this.size = 0;
+		if (capacity < 1) capacity = 1;
+		tids = new int[capacity];
+		iutils = new double[capacity];
+		rutils = new double[capacity];
+		weights = new int[capacity];
 	}
-	
+
 	// Add an element to this utility list and update the sums at the same time.
 	public void addElement(Element element){
-		sumIutils += element.iutils;
-		sumRutils += element.rutils;
-		mapElements.put(element.tid, element);
+		addElement(element.tid, element.iutils, element.rutils);
+	}
+
+	// Append an element, tids must be added in increasing order
+	public void addElement(int tid, double iutil, double rutil) {
+		addElement(tid, iutil, rutil, 1);
+	}
+
+	// Append an element standing for 'weight' merged transactions
+	public void addElement(int tid, double iutil, double rutil, int weight) {
+		if (size == tids.length) {
+			int capacity = size << 1;
+			tids = Arrays.copyOf(tids, capacity);
+			iutils = Arrays.copyOf(iutils, capacity);
+			rutils = Arrays.copyOf(rutils, capacity);
+			weights = Arrays.copyOf(weights, capacity);
+		}
+		bitmap = null;
+		signature |= 1L << tid;				// the shift distance is taken mod 64
+		tids[size] = tid;
+		iutils[size] = iutil;
+		rutils[size] = rutil;
+		weights[size] = weight;
+		sumIutils += iutil;
+		sumRutils += rutil;
+		support += weight;
+		size++;
+	}
+
+	// Merge one more transaction into the existing element of 'tid'
+	public void mergeElement(int tid, double iutil, double rutil) {
+		mergeElement(tid, iutil, rutil, 1);
+	}
+
+	// Merge an element standing for 'weight' transactions into the existing element of 'tid'
+	public void mergeElement(int tid, double iutil, double rutil, int weight) {
+		int pos = indexOf(tid);
+		iutils[pos] += iutil;
+		rutils[pos] += rutil;
+		weights[pos] += weight;
+		sumIutils += iutil;
+		sumRutils += rutil;
+		support += weight;
+		bitmap = null;
+	}
+
+	// append the elements of 'block', whose tids all follow the ones of this map
+	public void append(UtilityMap block) {
+		int n = size + block.size;
+		if (n > tids.length) {
+			int capacity = Math.max(n, size << 1);
+			tids = Arrays.copyOf(tids, capacity);
+			iutils = Arrays.copyOf(iutils, capacity);
+			rutils = Arrays.copyOf(rutils, capacity);
+			weights = Arrays.copyOf(weights, capacity);
+		}
+		System.arraycopy(block.tids, 0, tids, size, block.size);
+		System.arraycopy(block.iutils, 0, iutils, size, block.size);
+		System.arraycopy(block.rutils, 0, rutils, size, block.size);
+		System.arraycopy(block.weights, 0, weights, size, block.size);
+		sumIutils += block.sumIutils;
+		sumRutils += block.sumRutils;
+		support += block.support;
+		size = n;
+		bitmap = null;
+		signature |= block.signature;
+	}
+
+	// drop the elements of the tids lower than 'tid', the oldest ones of a window
+	public void removeBefore(int tid) {
+		int k = 0;
+		while (k < size && tids[k] < tid) k++;
+		if (k == 0) return;
+		size -= k;
+		System.arraycopy(tids, k, tids, 0, size);
+		System.arraycopy(iutils, k, iutils, 0, size);
+		System.arraycopy(rutils, k, rutils, 0, size);
+		System.arraycopy(weights, k, weights, 0, size);
+		sumIutils = 0;								// summed again rather than subtracted, no rounding drift
+		sumRutils = 0;
+		support = 0;
+		signature = 0;
+		for (int i = 0; i < size; i++) {
+			sumIutils += iutils[i];
+			sumRutils += rutils[i];
+			support += weights[i];
+			signature |= 1L << tids[i];
+		}
+		bitmap = null;
+	}
+
+	// heap bytes held by the columns
+	public long columnBytes() {
+		if (tids == null) return 0;
+		long bytes = 4L * tids.length + 4L * weights.length;
+		if (iutils != null) return bytes + 8L * iutils.length + 8L * rutils.length;
+		bytes += 4L * fixedRutils.length;
+		if (iutilCodes != null) return bytes + 2L * iutilCodes.length + 4L * dictionary.length;
+		return bytes + 4L * fixedIutils.length;
+	}
+
+	// true if the map uses the fixed-point layout
+	public boolean isFixed() {
+		return fixedRutils != null;
+	}
+
+	// itemset utility of the index-th element, in any layout
+	public double iutil(int index) {
+		if (iutils != null) return iutils[index];
+		return (iutilCodes != null) ? dictionary[iutilCodes[index]] : fixedIutils[index];
+	}
+
+	// remaining utility of the index-th element, in any layout
+	public double rutil(int index) {
+		return (rutils != null) ? rutils[index] : fixedRutils[index];
+	}
+
+	// true if the columns can be turned into ints: every utility integral and every
+	// iutil + rutil, which bounds the utilities of all the joins, within int range
+	public boolean fitsFixed() {
+		for (int i = 0; i < size; i++) {
+			double iu = iutils[i], ru = rutils[i];
+			if (iu != Math.rint(iu) || ru != Math.rint(ru) || iu < 0 || ru < 0 || iu + ru > Integer.MAX_VALUE)
+				return false;
+		}
+		return sumIutils + sumRutils < 0x1p53;				// the sums stay exact in a double
+	}
+
+	// switch to the fixed-point layout, see fitsFixed
+	public void toFixed() {
+		fixedIutils = new int[size];
+		fixedRutils = new int[size];
+		for (int i = 0; i < size; i++) {
+			fixedIutils[i] = (int) iutils[i];
+			fixedRutils[i] = (int) rutils[i];
+		}
+		iutils = null;
+		rutils = null;
+		weights = Arrays.copyOf(weights, size);
+		tids = Arrays.copyOf(tids, size);
+	}
+
+	// fixed-point layout: replace the iutils by codes into their distinct values, when
+	// there are at most 65536 of them and the codes and dictionary take less room
+	public boolean encodeIutils() {
+		if (fixedIutils == null || size == 0) return false;
+		int[] values = Arrays.copyOf(fixedIutils, size);
+		Arrays.sort(values);
+		int distinct = 0;
+		for (int i = 0; i < size; i++)
+			if (i == 0 || values[i] != values[distinct - 1]) values[distinct++] = values[i];
+		if (distinct > 65536 || 4L * distinct + 2L * size >= 4L * size) return false;
+		dictionary = Arrays.copyOf(values, distinct);
+		iutilCodes = new char[size];
+		for (int i = 0; i < size; i++)
+			iutilCodes[i] = (char) Arrays.binarySearch(dictionary, fixedIutils[i]);
+		fixedIutils = null;
+		return true;
+	}
+
+	// the iutils back as a plain int column
+	public void decodeIutils() {
+		if (iutilCodes == null) return;
+		fixedIutils = new int[size];
+		for (int i = 0; i < size; i++) fixedIutils[i] = dictionary[iutilCodes[i]];
+		iutilCodes = null;
+		dictionary = null;
+	}
+
+	// append an element to a map of the fixed-point layout
+	public void addFixed(int tid, int iutil, int rutil, int weight) {
+		if (size == tids.length) {
+			int capacity = size << 1;
+			tids = Arrays.copyOf(tids, capacity);
+			fixedIutils = Arrays.copyOf(fixedIutils, capacity);
+			fixedRutils = Arrays.copyOf(fixedRutils, capacity);
+			weights = Arrays.copyOf(weights, capacity);
+		}
+		signature |= 1L << tid;
+		tids[size] = tid;
+		fixedIutils[size] = iutil;
+		fixedRutils[size] = rutil;
+		weights[size] = weight;
+		sumIutils += iutil;
+		sumRutils += rutil;
+		support += weight;
 		size++;
 	}
-	
+
+	// an empty map of the fixed-point layout
+	static UtilityMap fixed(int item, int capacity) {
+		UtilityMap ul = new UtilityMap(item, 0);
+		ul.resetFixed(item, capacity);
+		return ul;
+	}
+
+	// reset, for the fixed-point layout
+	public void resetFixed(int item, int capacity) {
+		if (fixedRutils == null) {							// an arena map coming from the double layout
+			iutils = null;
+			rutils = null;
+			fixedIutils = new int[1];
+			fixedRutils = new int[1];
+		}
+		this.item = item;
+		size = 0;
+		sumIutils = 0;
+		sumRutils = 0;
+		support = 0;
+		bitmap = null;
+		signature = 0;
+		if (tids.length < capacity || fixedIutils.length < capacity) {
+			capacity = Math.max(capacity, tids.length << 1);
+			tids = new int[capacity];
+			fixedIutils = new int[capacity];
+			fixedRutils = new int[capacity];
+			weights = new int[capacity];
+		}
+	}
+
+	// empty the map and give it to 'item', with room for 'capacity' elements, to reuse it
+	public void reset(int item, int capacity) {
+		this.item = item;
+		size = 0;
+		sumIutils = 0;
+		sumRutils = 0;
+		support = 0;
+		bitmap = null;
+		signature = 0;
+		if (tids.length < capacity) {					// nothing to keep, no copy
+			capacity = Math.max(capacity, tids.length << 1);
+			tids = new int[capacity];
+			iutils = new double[capacity];
+			rutils = new double[capacity];
+			weights = new int[capacity];
+		}
+	}
+
+	// release the unused capacity once the map is complete
+	public void trimToSize() {
+		if (size < tids.length) {
+			tids = Arrays.copyOf(tids, size);
+			iutils = Arrays.copyOf(iutils, size);
+			rutils = Arrays.copyOf(rutils, size);
+			weights = Arrays.copyOf(weights, size);
+		}
+	}
+
 	// Get the support of the itemset represented by this utility-list
 	public int getSupport() {
-		return size;
+		return support;
+	}
+
+	// position of a tid in this map, or -1 if absent. Complexity: O(log n)
+	public int indexOf(int tid) {
+		int pos = Arrays.binarySearch(tids, 0, size, tid);
+		return pos >= 0 ? pos : -1;
+	}
+
+	// Check for the presence of a TID
+	public boolean hasTID(int tid) {
+		return indexOf(tid) >= 0;
+	}
+
+	// the tidset as a compressed bitmap, built at the first request
+	public TidBitmap tidset() {
+		TidBitmap b = bitmap;
+		if (b == null) {
+			b = new TidBitmap(tids, size);
+			bitmap = b;
+		}
+		return b;
 	}
-	
-	// Check for the presence of a TID 
-	public boolean hasTID(Integer tid) {
-		return mapElements.get(tid) != null;	// cost of O(1)
+
+	// 64-bit fingerprint of the tidset, bit 'tid mod 64' set for each tid, kept up
+	// to date as elements are added: the signature of a subset is held in the one
+	// of its superset
+	public long signature() {
+		return signature;
+	}
+
+	// the index-th element, for inspection purposes
+	public Element getElement(int index) {
+		return new Element(tids[index], iutil(index), rutil(index));
 	}
-	
+
+	// check if TidSet(other) \subseteq TidSet(this) by merging both sorted tidsets.
+	// Complexity: O(|this| + |other|), or O(|other| log |this|) when this is much larger
+	public boolean containsAllTIDs(UtilityMap other) {
+		int n = other.size;
+		if (n == 0) return true;
+		if (size < n) return false;
+		int[] a = tids, b = other.tids;
+		if (b[0] < a[0] || b[n-1] > a[size-1]) return false;
+
+		int i = 0;
+		if (size > (n << 3)) {						// gallop through the larger tidset
+			for (int k = 0; k < n; k++) {
+				int pos = Arrays.binarySearch(a, i, size, b[k]);
+				if (pos < 0) return false;
+				i = pos + 1;
+			}
+			return true;
+		}
+		for (int k = 0; k < n; k++) {
+			int tid = b[k];
+			while (i < size && a[i] < tid) i++;
+			if (i == size || a[i] != tid) return false;
+			i++;
+		}
+		return true;
+	}
+
 	public String toString() {
-		String result = " Item = [" + item + "] (sup = " + getSupport() + ")\n"; 
+		String result = " Item = [" + item + "] (sup = " + getSupport() + ")\n";
 
-		for (Element e : mapElements.values()) {
-			result += "  TID: " + String.format("%-6d", e.tid) + 
-							   " | iutil = " + String.format("%8.2f", e.iutils) + 
-							   " | rutil = " + String.format("%8.2f", e.rutils) + 
+		for (int i = 0; i < size; i++) {
+			result += "  TID: " + String.format("%-6d", tids[i]) +
+							   " | iutil = " + String.format("%8.2f", iutil(i)) +
+							   " | rutil = " + String.format("%8.2f", rutil(i)) +
 							   "\n";
 		}
-		result += "              | SUMIU = " + String.format("%8.2f", sumIutils) + 
+		result += "              | SUMIU = " + String.format("%8.2f", sumIutils) +
 				  " | SUMRU = " + String.format("%8.2f", sumRutils);
 		return result;
 	}
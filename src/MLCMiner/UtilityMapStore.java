@@ -0,0 +1,221 @@
+package MLCMiner;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+//	UtilityMapStore
+//	---------------
+//	Storage of the base utility maps outside the Java heap. The columns of the maps
+//	of a level are written once, either to a memory-mapped temp file (heap budget)
+//	or to direct buffers (off-heap mode), and dropped from the heap: only the item,
+//	the sums and the support stay. Fixed-point maps are written with int utilities,
+//	dictionary codes decoded. While the level is mined they are paged back into
+//	arrays, afterwards the level is freed, the search never comes back to it. Direct
+//	buffers are released at once rather than left to the garbage collector, the
+//	file is deleted on close.
+class UtilityMapStore {
+
+	static final int	ELEMENT_BYTES = 8 + 8 + 4 + 4;	// iutil, rutil, tid, weight
+	static final int	FIXED_ELEMENT_BYTES = 4 + 4 + 4 + 4;	// the same in the fixed-point layout
+	static final long	CHUNK_BYTES = 1L << 30;			// largest direct buffer holding several maps
+
+	private final boolean		offHeap;
+	private final Path			path;				// file backend
+	private final FileChannel	channel;
+	private long				end = 0;
+	private final long[][]		offsets;			// per level, offset of each map in the file or its chunk
+	private final int[][]		chunkOf;			// off-heap backend: per level, chunk of each map
+	private final ByteBuffer[][] chunks;			// off-heap backend: per level, its direct buffers
+	private final boolean[]		fixed;				// per level, maps of the fixed-point layout
+	long						storedBytes = 0;	// column bytes written, all levels
+
+	UtilityMapStore(int levels, boolean offHeap) throws IOException {
+		this.offHeap = offHeap;
+		if (offHeap) {
+			path = null;
+			channel = null;
+		}
+		else {
+			path = Files.createTempFile("mlcminer-spill", ".bin");
+			path.toFile().deleteOnExit();
+			channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		}
+		offsets = new long[levels][];
+		chunkOf = new int[levels][];
+		chunks = new ByteBuffer[levels][];
+		fixed = new boolean[levels];
+	}
+
+	// heap bytes held by the columns of the maps of a level
+	static long bytes(EUList eul) {
+		long bytes = 0;
+		for (UtilityMap ul : eul.list) bytes += ul.columnBytes();
+		return bytes;
+	}
+
+	// write the maps of a level out and drop their columns
+	void store(int level, EUList eul) throws IOException {
+		long[] offset = new long[eul.size()];
+		fixed[level] = eul.size() > 0 && eul.get(0).isFixed();
+		int element = fixed[level] ? FIXED_ELEMENT_BYTES : ELEMENT_BYTES;
+		if (offHeap) layout(level, eul, offset, element);
+		for (int j = 0; j < eul.size(); j++) {
+			UtilityMap ul = eul.get(j);
+			int n = ul.size;
+			if (!offHeap) {
+				offset[j] = end;
+				end += (long) n * element;
+			}
+			if (n == 0) continue;
+			ByteBuffer buffer = region(level, j, offset[j], n * element, FileChannel.MapMode.READ_WRITE);
+			if (fixed[level]) {
+				ul.decodeIutils();
+				buffer.asIntBuffer().put(ul.fixedIutils, 0, n);
+				buffer.position(n * 4);
+				buffer.asIntBuffer().put(ul.fixedRutils, 0, n);
+				buffer.position(n * 8);
+			}
+			else {
+				buffer.asDoubleBuffer().put(ul.iutils, 0, n);		// doubles first, every column stays aligned
+				buffer.position(n * 8);
+				buffer.asDoubleBuffer().put(ul.rutils, 0, n);
+				buffer.position(n * 16);
+			}
+			buffer.asIntBuffer().put(ul.tids, 0, n);
+			buffer.position(buffer.position() + n * 4);
+			buffer.asIntBuffer().put(ul.weights, 0, n);
+			storedBytes += (long) n * element;
+		}
+		if (!offHeap) offsets[level] = offset;
+		release(eul);
+	}
+
+	// page the columns of a stored level back into the heap
+	void load(int level, EUList eul) throws IOException {
+		for (int j = 0; j < eul.size(); j++) {
+			UtilityMap ul = eul.get(j);
+			int n = ul.size;
+			ul.tids = new int[Math.max(n, 1)];
+			ul.weights = new int[Math.max(n, 1)];
+			if (fixed[level]) {
+				ul.fixedIutils = new int[Math.max(n, 1)];
+				ul.fixedRutils = new int[Math.max(n, 1)];
+			}
+			else {
+				ul.iutils = new double[Math.max(n, 1)];
+				ul.rutils = new double[Math.max(n, 1)];
+			}
+			if (n == 0) continue;
+			int element = fixed[level] ? FIXED_ELEMENT_BYTES : ELEMENT_BYTES;
+			ByteBuffer buffer = region(level, j, offsets[level][j], n * element, FileChannel.MapMode.READ_ONLY);
+			if (fixed[level]) {
+				buffer.asIntBuffer().get(ul.fixedIutils, 0, n);
+				buffer.position(n * 4);
+				buffer.asIntBuffer().get(ul.fixedRutils, 0, n);
+				buffer.position(n * 8);
+			}
+			else {
+				buffer.asDoubleBuffer().get(ul.iutils, 0, n);
+				buffer.position(n * 8);
+				buffer.asDoubleBuffer().get(ul.rutils, 0, n);
+				buffer.position(n * 16);
+			}
+			buffer.asIntBuffer().get(ul.tids, 0, n);
+			buffer.position(buffer.position() + n * 4);
+			buffer.asIntBuffer().get(ul.weights, 0, n);
+		}
+	}
+
+	// a level is mined: drop its columns and release its direct buffers
+	void free(int level, EUList eul) {
+		release(eul);
+		if (chunks[level] != null)
+			for (ByteBuffer chunk : chunks[level]) freeDirect(chunk);
+		chunks[level] = null;
+		offsets[level] = null;
+	}
+
+	// close and delete the file, release the direct buffers left
+	void close() throws IOException {
+		for (int level = 0; level < chunks.length; level++) {
+			if (chunks[level] != null)
+				for (ByteBuffer chunk : chunks[level]) freeDirect(chunk);
+			chunks[level] = null;								// a second close frees nothing twice
+		}
+		if (channel != null) {
+			channel.close();
+			Files.deleteIfExists(path);
+		}
+	}
+
+	// off-heap backend: pack the maps of a level into direct buffers of at most
+	// CHUNK_BYTES, a map larger than that gets a buffer of its own
+	private void layout(int level, EUList eul, long[] offset, int element) {
+		int[] chunk = new int[eul.size()];
+		long[] chunkBytes = new long[eul.size() + 1];
+		int count = 0;
+		for (int j = 0; j < eul.size(); j++) {
+			long bytes = (long) eul.get(j).size * element;
+			if (count == 0 || (chunkBytes[count - 1] + bytes > CHUNK_BYTES && chunkBytes[count - 1] > 0))
+				count++;
+			chunk[j] = count - 1;
+			offset[j] = chunkBytes[count - 1];
+			chunkBytes[count - 1] += bytes;
+		}
+		ByteBuffer[] buffers = new ByteBuffer[count];
+		for (int c = 0; c < count; c++)
+			buffers[c] = ByteBuffer.allocateDirect((int) Math.min(chunkBytes[c], Integer.MAX_VALUE));
+		offsets[level] = offset;
+		chunkOf[level] = chunk;
+		chunks[level] = buffers;
+	}
+
+	// the 'bytes' bytes of map j of a level, in native order
+	private ByteBuffer region(int level, int j, long offset, int bytes, FileChannel.MapMode mode) throws IOException {
+		ByteBuffer buffer;
+		if (offHeap) {
+			buffer = chunks[level][chunkOf[level][j]].duplicate();
+			buffer.position((int) offset);
+			buffer.limit((int) offset + bytes);
+			buffer = buffer.slice();
+		}
+		else
+			buffer = channel.map(mode, offset, bytes);
+		return buffer.order(ByteOrder.nativeOrder());
+	}
+
+	// drop the columns of the maps of a level
+	private static void release(EUList eul) {
+		for (UtilityMap ul : eul.list) {
+			ul.tids = null;
+			ul.iutils = null;
+			ul.rutils = null;
+			ul.fixedIutils = null;
+			ul.fixedRutils = null;
+			ul.iutilCodes = null;
+			ul.dictionary = null;
+			ul.weights = null;
+			ul.bitmap = null;
+		}
+	}
+
+	// release a direct buffer now instead of at its collection. Unsafe.invokeCleaner
+	// is reached by reflection, when it is not available the collector does it.
+	static void freeDirect(ByteBuffer buffer) {
+		if (buffer == null || !buffer.isDirect()) return;
+		try {
+			Class<?> type = Class.forName("sun.misc.Unsafe");
+			Field field = type.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			type.getMethod("invokeCleaner", ByteBuffer.class).invoke(field.get(null), buffer);
+		}
+		catch (ReflectiveOperationException | RuntimeException e) {
+		}
+	}
+}
@@ -0,0 +1,313 @@
+package MLCMiner;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+//	WindowMLCMiner
+//	--------------
+//	MLC-Miner over the last 'windowSize' transactions of a feed. Every arriving
+//	transaction is projected onto the levels and appended to the utility maps and
+//	the EUCS, and the oldest one leaves the window: its pairs are taken out of the
+//	EUCS at once, its elements are cut from the head of the utility maps in batches.
+//	The closed patterns are emitted on demand, or every 'emitInterval' transactions,
+//	from the maintained structures:
+//	  - the patterns holding a transaction added since the last emission are mined
+//	    again from the branches holding one, as in IncrementalMLCMiner
+//	  - the other patterns can only be previous ones. Those that lost transactions
+//	    to expiry have their utility, support and closure checked again
+//	New items take the next names of their levels, after the ones already named, so an
+//	insertion never touches the other maps. reorder() ranks the names on the GWUs of the
+//	window again, for a caller that lets many items arrive and wants the search order back.
+//	Identical transactions are not merged, an element must expire with its transaction.
+public class WindowMLCMiner extends IncrementalMLCMiner {
+
+	public int		windowSize;						// number of transactions in the window
+	public int		emitInterval = 0;				// emit every n transactions, 0 = on demand only
+	public String	emitOutput = null;				// file written by the interval emissions
+
+	// level projections of a transaction still in the window
+	static class Projection {
+		final int			tid;
+		final int[][]		items;					// renamed items of each level, in name order
+		final double[][]	utilities;				// utility of each of these items
+		final double[]		levelUtilities;			// transaction utility of each level
+
+		Projection(int tid, Transaction tran, int levels) {
+			this.tid = tid;
+			items = new int[levels][];
+			utilities = new double[levels][];
+			levelUtilities = new double[levels];
+			for (int i = 0; i < levels; i++) {
+				ArrayList<Integer> levelItems = tran.listItemsPerLevel.get(i);
+				items[i] = new int[levelItems.size()];
+				utilities[i] = new double[levelItems.size()];
+				for (int j = 0; j < items[i].length; j++) {
+					items[i][j] = levelItems.get(j);
+					utilities[i][j] = tran.listUtilitiesPerLevel.get(i).get(j);
+				}
+				levelUtilities[i] = tran.listTransactionUtility.get(i);
+			}
+		}
+	}
+
+	ArrayDeque<Projection>	window;
+	int						windowStart = 0;		// first tid in the window
+	int						compactedStart = 0;		// the utility maps hold no tid below this one
+	boolean					expired = false;		// transactions left the window since the last emission
+	int						sinceEmit = 0;			// transactions added since the last emission
+
+	public WindowMLCMiner(boolean useEUCP, int windowSize) {
+		super(useEUCP);
+		this.windowSize = windowSize;
+		mergeTransactions = false;
+	}
+
+	// start an empty window over the items of a taxonomy
+	public void open(String inputTaxonomy, double minUtility) throws IOException {
+		minUtil = minUtility;
+		keepScanState = true;
+		parallelism = 1;
+		mapItemToLevel = new HashMap<Integer, Integer>();
+		mapItemToAncestor = new HashMap<Integer, List<Integer>>();
+		dataset = new Dataset();
+		taxonomy = new Taxonomy(inputTaxonomy, dataset);
+		GWUs = new double[dataset.getMaxItem() + 1];
+		dataset = null;
+
+		maxLevel = 0;
+		itemsCountPerLevel = new int[0];
+		EULPerLevel = new ArrayList<EUList>();
+		EUCSPerLevel = new ArrayList<EUCS>();
+		oldNameToNewNamesPerLevel = new ArrayList<int[]>();
+		newNamesToOldNamesPerLevel = new ArrayList<int[]>();
+		patternsPerLevel = new ArrayList<Map<ItemsKey, Pattern>>();
+		window = new ArrayDeque<Projection>();
+		transCount = 0;
+		firstDeltaTid = 0;
+		windowStart = 0;
+		compactedStart = 0;
+		expired = false;
+		sinceEmit = 0;
+	}
+
+	// feed a transaction file through the window, then emit the patterns of its last transactions
+	@Override
+	public void runAlgorithm(String inputTransaction, String inputTaxonomy, String output, double minUtility, int maxTrans) throws IOException {
+		open(inputTaxonomy, minUtility);
+		addBatch(new Dataset(inputTransaction, maxTrans).getTransactions(), output);
+	}
+
+	@Override
+	public void addBatch(List<Transaction> batch, String output) throws IOException {
+		for (Transaction t : batch)
+			add(t);
+		emit(output);
+	}
+
+	// insert a transaction, expire the oldest one if the window is full
+	public void add(Transaction tran) throws IOException {
+		scanTransactionFirstTime(tran);
+		if (hasNewItems(tran))
+			nameNewItems();
+		addTransaction(tran, transCount++);
+
+		while (window.size() > windowSize)
+			expire(window.poll());
+		if (windowStart - compactedStart >= windowSize)	// cut the expired heads once per window length
+			compact();
+
+		if (emitInterval > 0 && ++sinceEmit >= emitInterval)
+			emit(emitOutput);
+	}
+
+	// update the closed patterns of the window and write them
+	public void emit(String output) throws IOException {
+		timerStart = System.currentTimeMillis();
+		compact();
+		if (expired) revalidate();
+		mine(output);
+		firstDeltaTid = transCount;
+		expired = false;
+		sinceEmit = 0;
+	}
+
+	@Override
+	void addTransaction(Transaction tran, int tid) {
+		tran.setLevelTransaction(maxLevel);
+		if (tran.items.length > 0)
+			tran.removeUnpromisingItems(oldNameToNewNamesPerLevel, mapItemToAncestor, mapItemToLevel);
+		addProjections(tran, tid);
+		window.add(new Projection(tid, tran, maxLevel));
+		tran.releaseLevels();
+	}
+
+	// true if an item of the transaction, or one of its ancestors, has no name yet
+	private boolean hasNewItems(Transaction tran) {
+		for (int item : tran.items)
+			for (int a : mapItemToAncestor.get(item)) {
+				int level = mapItemToLevel.get(a);
+				if (level > EULPerLevel.size()) return true;
+				int[] names = oldNameToNewNamesPerLevel.get(level - 1);
+				if (a >= names.length || names[a] == 0) return true;
+			}
+		return false;
+	}
+
+	// take the oldest transaction out of the window
+	private void expire(Projection p) {
+		windowStart = p.tid + 1;
+		expired = true;
+		if (!useEUCPstrategy) return;
+		for (int i = 0; i < p.items.length; i++) {			// same pairs, same order as when added
+			int[] items = p.items[i];
+			EUCS eucs = EUCSPerLevel.get(i);
+			for (int u = 0; u < items.length - 1; u++)
+				for (int v = u + 1; v < items.length; v++)
+					eucs.add(items[u], items[v], -p.levelUtilities[i]);
+		}
+	}
+
+	// drop the elements of the expired transactions from the utility maps
+	private void compact() {
+		if (compactedStart == windowStart) return;
+		for (EUList eul : EULPerLevel)
+			for (int j = 0; j < eul.size(); j++)
+				eul.get(j).removeBefore(windowStart);
+		compactedStart = windowStart;
+	}
+
+	// compaction step, never run by add() or emit(): items are named as they arrive,
+	// while the search is fastest with the names in increasing GWU order. The names of
+	// every level are ranked again on the GWUs of the window, and the utility maps and
+	// EUCS are rebuilt from all the projections under the new names, so its cost is
+	// that of loading the whole window.
+	public void reorder() {
+		compact();
+		for (int i = 0; i < maxLevel; i++) {
+			int n = itemsCountPerLevel[i];
+			double[] gwu = new double[n + 1];
+			for (Projection p : window)
+				if (i < p.items.length)
+					for (int item : p.items[i]) gwu[item] += p.levelUtilities[i];
+			Integer[] order = new Integer[n];
+			for (int j = 0; j < n; j++) order[j] = j + 1;
+			Arrays.sort(order, (a, b) -> (gwu[a] != gwu[b]) ? Double.compare(gwu[a], gwu[b]) : a - b);
+			int[] rename = new int[n + 1];
+			for (int j = 0; j < n; j++) rename[order[j]] = j + 1;
+
+			int[] oldToNew = oldNameToNewNamesPerLevel.get(i);		// original item -> name
+			int[] newToOld = newNamesToOldNamesPerLevel.get(i);
+			int[] previous = Arrays.copyOf(newToOld, n + 1);
+			for (int name = 1; name <= n; name++) {
+				oldToNew[previous[name]] = rename[name];
+				newToOld[rename[name]] = previous[name];
+			}
+
+			EUList eul = new EUList();
+			for (int name = 1; name <= n; name++) eul.add(new UtilityMap(name));
+			EUCS eucs = useEUCPstrategy ? new EUCS(n, maxEUCSMatrixBytes) : null;
+			for (Projection p : window) {
+				if (i >= p.items.length || p.items[i].length == 0) continue;
+				int[] items = p.items[i];
+				double[] utilities = p.utilities[i];
+				for (int j = 0; j < items.length; j++) items[j] = rename[items[j]];
+				sortByName(items, utilities);
+				double ru = 0;
+				for (int j = items.length - 1; j >= 0; j--) {		// as in addProjections
+					eul.get(items[j] - 1).addElement(p.tid, utilities[j], ru);
+					ru += utilities[j];
+				}
+				if (eucs != null)
+					for (int u = 0; u < items.length - 1; u++)
+						for (int v = u + 1; v < items.length; v++)
+							eucs.add(items[u], items[v], p.levelUtilities[i]);
+			}
+			EULPerLevel.set(i, eul);
+			if (useEUCPstrategy) EUCSPerLevel.set(i, eucs);
+
+			Map<ItemsKey, Pattern> renamed = new HashMap<ItemsKey, Pattern>();
+			if (i < patternsPerLevel.size()) {
+				for (Pattern p : patternsPerLevel.get(i).values()) {
+					int[] itemset = new int[p.itemset.length];
+					for (int j = 0; j < itemset.length; j++) itemset[j] = rename[p.itemset[j]];
+					int[] key = itemset.clone();
+					Arrays.sort(key);
+					renamed.put(new ItemsKey(key, key.length), new Pattern(itemset, p.utility, p.support, p.level));
+				}
+				patternsPerLevel.set(i, renamed);
+			}
+		}
+	}
+
+	// sort the items of a projection and their utilities by name, insertion sort as they are short
+	private static void sortByName(int[] items, double[] utilities) {
+		for (int j = 1; j < items.length; j++) {
+			int item = items[j];
+			double utility = utilities[j];
+			int k = j - 1;
+			for (; k >= 0 && items[k] > item; k--) {
+				items[k + 1] = items[k];
+				utilities[k + 1] = utilities[k];
+			}
+			items[k + 1] = item;
+			utilities[k + 1] = utility;
+		}
+	}
+
+	// check again the previous patterns that lost transactions: those holding a new
+	// transaction are left to the mining, the others are kept while they stay closed
+	// and of high utility
+	private void revalidate() {
+		for (int level = 0; level < patternsPerLevel.size(); level++) {
+			EUList eul = EULPerLevel.get(level);
+			Iterator<Map.Entry<ItemsKey, Pattern>> it = patternsPerLevel.get(level).entrySet().iterator();
+			while (it.hasNext()) {
+				Map.Entry<ItemsKey, Pattern> entry = it.next();
+				int[] items = entry.getKey().items;
+				Pattern p = entry.getValue();
+				UtilityMap ul = eul.get(items[0] - 1);
+				for (int i = 1; i < items.length && ul.size > 0; i++)
+					ul = join(ul, eul.get(items[i] - 1));
+
+				if (ul.size > 0 && holdsDeltaTid(ul))
+					it.remove();								// found again by the mining if still closed
+				else if (ul.getSupport() == p.support)
+					continue;									// same tidset, nothing changed
+				else if (ul.size == 0 || ul.sumIutils < minUtil || !isClosed(items, ul, eul))
+					it.remove();
+				else
+					entry.setValue(new Pattern(p.itemset, ul.sumIutils, ul.getSupport(), level));
+			}
+		}
+	}
+
+	// the tidset of x and y with the utilities of both, no pruning
+	private UtilityMap join(UtilityMap x, UtilityMap y) {
+		UtilityMap xy = new UtilityMap(y.item, Math.min(x.size, y.size));
+		int j = 0;
+		for (int i = 0; i < x.size; i++) {
+			int tid = x.tids[i];
+			while (j < y.size && y.tids[j] < tid) j++;
+			if (j == y.size) break;
+			if (y.tids[j] == tid)
+				xy.addElement(tid, x.iutils[i] + y.iutils[j], 0, x.weights[i]);
+		}
+		return xy;
+	}
+
+	// true if no other item of the level occurs in every transaction of the tidset
+	private boolean isClosed(int[] items, UtilityMap ul, EUList eul) {
+		for (int j = 0; j < eul.size(); j++) {
+			UtilityMap other = eul.get(j);
+			if (other.getSupport() < ul.getSupport() || Arrays.binarySearch(items, other.item) >= 0) continue;
+			if (hasAllTIDS(other, ul)) return false;
+		}
+		return true;
+	}
+}